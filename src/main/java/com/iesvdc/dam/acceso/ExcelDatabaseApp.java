@@ -1,10 +1,21 @@
 package com.iesvdc.dam.acceso;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import com.iesvdc.dam.acceso.conexion.Config;
 import com.iesvdc.dam.acceso.databaseutil.DatabaseReader;
-import com.iesvdc.dam.acceso.excelutil.ExcelReader;
+import com.iesvdc.dam.acceso.excelutil.ImportEngine;
+import com.iesvdc.dam.acceso.excelutil.ImportJob;
+import com.iesvdc.dam.acceso.excelutil.ImportResult;
+import com.iesvdc.dam.acceso.excelutil.ImportSummary;
+import com.iesvdc.dam.acceso.excelutil.InputFiles;
 
 /**
  * Aplicación principal que permite importar datos desde un Excel a MySQL
@@ -38,7 +49,15 @@ public class ExcelDatabaseApp {
     }
 
     /**
-     * Importa datos desde un fichero Excel a la base de datos.
+     * Importa datos desde uno o varios ficheros Excel a la base de datos.
+     * <p>
+     * <b>inputFile</b> puede ser un fichero, un directorio o un patrón como
+     * <code>datos/*.xlsx</code> (ver {@link InputFiles}). Con varios ficheros, todos
+     * se importan a la vez, cada uno en su hilo virtual y con su propia transacción.
+     * Las lecturas se limitan con <b>maxParseConcurrency</b>, las escrituras comparten
+     * un máximo de <b>maxDbConcurrency</b> conexiones y los ficheros de una misma
+     * tabla se vuelcan de uno en uno (ver {@link ImportEngine}). Al terminar se
+     * muestra un resumen por fichero.
      * 
      * @param props
      */
@@ -49,13 +68,60 @@ public class ExcelDatabaseApp {
             return;
         }
 
-        ExcelReader reader = new ExcelReader(); // Crear instancia del lector de Excel
-        reader.loadWorkbook(inputFile); // Cargar el libro de Excel
+        List<Path> ficheros;
         try {
-            reader.saveToDatabase(); // Guardar datos en la base de datos
-            System.out.println("Importación completada con éxito.");
+            ficheros = InputFiles.resolve(inputFile); // Fichero, directorio o patrón
+        } catch (IOException e) {
+            System.err.println("No se pudo recorrer " + inputFile + ": " + e.getMessage());
+            return;
+        }
+        if (ficheros.isEmpty()) {
+            System.err.println("No hay ficheros Excel que importar en " + inputFile + ".");
+            return;
+        }
+        if (ficheros.size() == 1) {
+            importarFichero(props, ficheros.get(0).toString());
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        ImportSummary resumen = new ImportSummary();
+        try (ImportEngine engine = new ImportEngine(props)) { // Motor de importación con su pool de conexiones
+            // Lanzar todos los trabajos antes de esperar a ninguno.
+            List<CompletableFuture<ImportResult>> trabajos = new ArrayList<>();
+            for (Path fichero : ficheros) {
+                trabajos.add(engine.submit(new ImportJob(fichero.toString(), props)));
+            }
+            System.out.println("Importando " + ficheros.size() + " ficheros...");
+            for (int i = 0; i < ficheros.size(); i++) {
+                try {
+                    resumen.add(trabajos.get(i).join());
+                } catch (CompletionException ex) {
+                    resumen.addFailure(ficheros.get(i).toString(), ex);
+                }
+            }
+        }
+        resumen.print(System.out, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        if (resumen.getFailures() > 0) {
+            System.err.println(resumen.getFailures() + " ficheros no se importaron; el resto se guardó.");
+        }
+    }
+
+    /**
+     * Importa un único fichero Excel a la base de datos.
+     */
+    private static void importarFichero(Properties props, String inputFile) {
+        try (ImportEngine engine = new ImportEngine(props)) { // Motor de importación con su pool de conexiones
+            ImportResult resultado = engine.submit(new ImportJob(inputFile, props)).join(); // Cargar y guardar el libro
+            System.out.println("Importación completada con éxito: " + resultado.getRows() + " filas en "
+                + resultado.getTables() + " tablas (" + resultado.getElapsedMillis() + " ms).");
+            if (resultado.getDuplicates() > 0 || resultado.getRejected() > 0) {
+                System.out.println("Filas descartadas: " + resultado.getDuplicates() + " duplicadas, "
+                    + resultado.getRejected() + " rechazadas.");
+            }
         } catch (RuntimeException ex) {
-            System.err.println("Error al importar el Excel a la base de datos: " + ex.getMessage());
+            Throwable causa = ex.getCause() != null ? ex.getCause() : ex;
+            System.err.println("Error al importar el Excel a la base de datos: " + causa.getMessage());
         }
     }
 
@@ -66,7 +132,7 @@ public class ExcelDatabaseApp {
      */
     private static void exportarBaseDatos(Properties props) {
         String outputFile = props.getProperty("outputFile", "datos/salida.xlsx"); // Obtener ruta del fichero de salida
-        DatabaseReader exporter = new DatabaseReader(); // Crear instancia del exportador de base de datos
+        DatabaseReader exporter = new DatabaseReader(props); // Crear instancia del exportador de base de datos
         try {
             exporter.export(outputFile); // Exportar datos a Excel
             System.out.println("Exportación completada. Archivo generado en: " + outputFile);
@@ -6,14 +6,17 @@ import java.sql.SQLException;
 // import java.sql.SQLException;
 import java.util.Properties;
 
+import com.iesvdc.dam.acceso.dialecto.Dialect;
+
 public class Conexion {
     
     /**
-      * Establece una conexión con la base de datos MySQL utilizando los parámetros definidos
+      * Establece una conexión con la base de datos utilizando los parámetros definidos
       * en un fichero de propiedades llamado <b>config.properties</b>.
       * <p>
       * El fichero debe contener las claves:
       * <ul>
+      *     <li><b>driver</b>: gestor de base de datos (MySQL, PostgreSQL o H2; ver {@link Dialect})</li>
       *     <li><b>host</b>: dirección del servidor de base de datos</li>
       *     <li><b>port</b>: puerto del servidor (por ejemplo, 3306)</li>
       *     <li><b>database</b>: nombre de la base de datos</li>
@@ -35,17 +38,22 @@ public class Conexion {
       * @see java.sql.DriverManager
       */
     public static Connection getConnection() {
-        Properties props = Config.getProperties("config.properties");
+        return getConnection(Config.getProperties("config.properties"));
+    }
+
+    /**
+     * Establece una conexión con la base de datos usando unas propiedades ya cargadas.
+     * Admite las mismas claves que {@link #getConnection()}.
+     *
+     * @param props propiedades de conexión.
+     * @return la conexión abierta o {@code null} si ocurre algún error.
+     */
+    public static Connection getConnection(Properties props) {
         Connection conn=null;
-        String cadenaConexion = 
-            "jdbc:mysql://" + 
-            props.getProperty("host")+ //host
-            ":"+
-            props.getProperty("port") // puerto
-            +"/"+ 
-            props.getProperty("database"); //base de datos
+        Dialect dialecto = Dialect.of(props); // Gestor indicado en la clave driver
+        String cadenaConexion = dialecto.jdbcUrl(props);
         try {            
-            conn = DriverManager.getConnection(cadenaConexion, props);            
+            conn = DriverManager.getConnection(cadenaConexion, dialecto.connectionProperties(props));            
         } catch (SQLException sqle) {
             System.err.println(
                 "Error al conectar a la base de datos: "+
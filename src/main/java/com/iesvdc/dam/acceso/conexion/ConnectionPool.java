@@ -0,0 +1,119 @@
+package com.iesvdc.dam.acceso.conexion;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Pool sencillo de conexiones JDBC que se puede compartir entre hilos.
+ * <p>
+ * Un {@link Semaphore} limita cuántas conexiones pueden estar prestadas a la vez
+ * y las conexiones devueltas se guardan en una cola para reutilizarlas.
+ * Las conexiones se crean bajo demanda con {@link Conexion#getConnection(Properties)}.
+ */
+public class ConnectionPool implements AutoCloseable {
+    /** Propiedades de conexión (copia privada). */
+    private final Properties props;
+    /** Número máximo de conexiones prestadas simultáneamente. */
+    private final int maxSize;
+    /** Permisos disponibles: uno por cada conexión que se puede prestar. */
+    private final Semaphore permisos;
+    /** Conexiones abiertas a la espera de ser reutilizadas. */
+    private final ConcurrentLinkedQueue<Connection> libres = new ConcurrentLinkedQueue<>();
+    private volatile boolean cerrado;
+
+    public ConnectionPool(Properties props, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("El tamaño del pool debe ser mayor que cero: " + maxSize);
+        }
+        this.props = new Properties();
+        this.props.putAll(props);
+        this.maxSize = maxSize;
+        this.permisos = new Semaphore(maxSize, true);
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Presta una conexión, esperando si ya hay {@code maxSize} conexiones en uso.
+     * Debe devolverse siempre con {@link #release(Connection)}.
+     *
+     * @return una conexión abierta.
+     * @throws SQLException si el pool está cerrado, se interrumpe la espera
+     *         o no se puede abrir una conexión nueva.
+     */
+    public Connection borrow() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones está cerrado.");
+        }
+        try {
+            permisos.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexión libre.", e);
+        }
+
+        // Si no se llega a prestar ninguna conexión, el permiso tiene que volver al pool.
+        try {
+            Connection conn;
+            while ((conn = libres.poll()) != null) {
+                if (!conn.isClosed()) {
+                    return conn;
+                }
+            }
+
+            conn = Conexion.getConnection(props);
+            if (conn == null) {
+                throw new SQLException("No se pudo obtener la conexión a la base de datos.");
+            }
+            return conn;
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve una conexión prestada al pool. Si quedó una transacción abierta
+     * se deshace para que el siguiente usuario la reciba limpia.
+     *
+     * @param conn conexión obtenida con {@link #borrow()}.
+     */
+    public void release(Connection conn) {
+        try {
+            if (cerrado || conn.isClosed()) {
+                conn.close();
+                return;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            libres.offer(conn);
+        } catch (SQLException e) {
+            try {
+                conn.close();
+            } catch (SQLException ignore) { }
+        } finally {
+            permisos.release();
+        }
+    }
+
+    /**
+     * Cierra las conexiones libres. Las prestadas se cerrarán al devolverse.
+     */
+    @Override
+    public void close() {
+        cerrado = true;
+        Connection conn;
+        while ((conn = libres.poll()) != null) {
+            try {
+                conn.close();
+            } catch (SQLException ignore) { }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.iesvdc.dam.acceso.databaseutil;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * Copia una columna de un {@link ResultSet} a celdas Excel con el getter JDBC
+ * adecuado a su tipo SQL.
+ * <p>
+ * Se crea una vez por columna a partir de {@link ResultSetMetaData} (ver
+ * {@link #forColumns}), de modo que el bucle de exportación no pasa por
+ * <code>getObject</code> ni por una cadena de <code>instanceof</code>: los números
+ * se leen con <code>getLong</code>/<code>getDouble</code> sin crear objetos y las
+ * fechas se escriben como fechas nativas de Excel con un estilo compartido.
+ * <p>
+ * Lo que una celda numérica de Excel no puede guardar sin perder información se
+ * escribe como texto: los decimales de más de {@value #DIGITOS_DOUBLE} dígitos, los
+ * <code>BIGINT UNSIGNED</code> y los enteros de más de 2<sup>53</sup> en valor absoluto
+ * con todos sus dígitos, y las fechas anteriores al
+ * 1 de enero de 1900, que no tienen número de serie en Excel, en formato ISO.
+ */
+final class ColumnExtractor {
+
+    /** Forma de leer y escribir la columna. */
+    enum Tipo {
+        ENTERO,
+        DECIMAL,
+        /** Decimal con más dígitos de los que caben en un double: se escribe como texto. */
+        DECIMAL_EXACTO,
+        BOOLEANO,
+        FECHA,
+        FECHA_HORA,
+        TEXTO
+    }
+
+    /** Estilos de fecha del libro; se crean una sola vez por libro. */
+    record Styles(CellStyle date, CellStyle dateTime) {
+
+        static Styles create(Workbook workbook) {
+            CellStyle fecha = workbook.createCellStyle();
+            fecha.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+            CellStyle fechaHora = workbook.createCellStyle();
+            fechaHora.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+            return new Styles(fecha, fechaHora);
+        }
+    }
+
+    /** Dígitos significativos que un double conserva siempre. */
+    static final int DIGITOS_DOUBLE = 15;
+
+    /** Mayor entero que un double guarda sin redondear (2^53). */
+    private static final long MAX_ENTERO_DOUBLE = 1L << 53;
+
+    /** Primera fecha con número de serie en Excel (sistema de 1900). */
+    private static final LocalDate PRIMERA_FECHA_EXCEL = LocalDate.of(1900, 1, 1);
+    private static final DateTimeFormatter FECHA_HORA_ISO = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Tipo tipo;
+    private final CellStyle estilo;
+
+    private ColumnExtractor(Tipo tipo, CellStyle estilo) {
+        this.tipo = tipo;
+        this.estilo = estilo;
+    }
+
+    Tipo getTipo() {
+        return this.tipo;
+    }
+
+    /**
+     * Crea un extractor por columna del resultado.
+     *
+     * @param meta metadatos del resultado.
+     * @param styles estilos de fecha del libro de destino.
+     * @return array con un extractor por columna (posición 0 = columna 1).
+     */
+    static ColumnExtractor[] forColumns(ResultSetMetaData meta, Styles styles) throws SQLException {
+        ColumnExtractor[] extractores = new ColumnExtractor[meta.getColumnCount()];
+        for (int i = 0; i < extractores.length; i++) {
+            Tipo tipo = tipoDe(meta, i + 1);
+            CellStyle estilo = switch (tipo) {
+                case FECHA -> styles.date();
+                case FECHA_HORA -> styles.dateTime();
+                default -> null;
+            };
+            extractores[i] = new ColumnExtractor(tipo, estilo);
+        }
+        return extractores;
+    }
+
+    private static Tipo tipoDe(ResultSetMetaData meta, int column) throws SQLException {
+        switch (meta.getColumnType(column)) {
+            case Types.BIT:
+                // BIT(1) es un booleano; BIT(n) es un campo de bits.
+                return meta.getPrecision(column) > 1 ? Tipo.ENTERO : Tipo.BOOLEANO;
+            case Types.BOOLEAN:
+                return Tipo.BOOLEANO;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return Tipo.ENTERO;
+            case Types.BIGINT:
+                // Un BIGINT UNSIGNED no cabe en un long (ni en un double sin redondear).
+                return meta.isSigned(column) ? Tipo.ENTERO : Tipo.DECIMAL_EXACTO;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return Tipo.DECIMAL;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                // Precisión 0: NUMERIC sin límite (PostgreSQL).
+                int precision = meta.getPrecision(column);
+                return precision > 0 && precision <= DIGITOS_DOUBLE ? Tipo.DECIMAL : Tipo.DECIMAL_EXACTO;
+            case Types.DATE:
+                return Tipo.FECHA;
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return Tipo.FECHA_HORA;
+            default:
+                return Tipo.TEXTO;
+        }
+    }
+
+    /**
+     * Copia el valor de la fila actual del resultado a la celda {@code column - 1}
+     * de la fila Excel. Los valores nulos no crean celda.
+     *
+     * @return tamaño aproximado del valor en bytes (para el presupuesto de la hoja).
+     */
+    int copy(ResultSet rs, int column, Row row) throws SQLException {
+        switch (tipo) {
+            case ENTERO: {
+                long valor = rs.getLong(column);
+                if (rs.wasNull()) {
+                    return 0;
+                }
+                return escribirEntero(row.createCell(column - 1), valor);
+            }
+            case DECIMAL: {
+                double valor = rs.getDouble(column);
+                if (rs.wasNull()) {
+                    return 0;
+                }
+                row.createCell(column - 1).setCellValue(valor);
+                return Double.BYTES;
+            }
+            case BOOLEANO: {
+                boolean valor = rs.getBoolean(column);
+                if (rs.wasNull()) {
+                    return 0;
+                }
+                row.createCell(column - 1).setCellValue(valor);
+                return 1;
+            }
+            default:
+                return write(row, column - 1, read(rs, column));
+        }
+    }
+
+    /**
+     * Lee el valor de la fila actual como objeto. Lo usa la exportación en paralelo,
+     * que tiene que guardar las filas hasta que el escritor las recoge.
+     */
+    Object read(ResultSet rs, int column) throws SQLException {
+        Object valor = switch (tipo) {
+            case ENTERO -> rs.getLong(column);
+            case DECIMAL -> rs.getDouble(column);
+            case DECIMAL_EXACTO -> {
+                BigDecimal decimal = rs.getBigDecimal(column);
+                yield decimal == null ? null : decimal.toPlainString();
+            }
+            case BOOLEANO -> rs.getBoolean(column);
+            case FECHA -> rs.getDate(column);
+            case FECHA_HORA -> rs.getTimestamp(column);
+            case TEXTO -> rs.getString(column);
+        };
+        return rs.wasNull() ? null : valor;
+    }
+
+    /**
+     * Escribe un entero como número o, si un double lo redondearía, como texto.
+     */
+    private static int escribirEntero(Cell cell, long valor) {
+        if (valor > MAX_ENTERO_DOUBLE || valor < -MAX_ENTERO_DOUBLE) {
+            String texto = Long.toString(valor);
+            cell.setCellValue(texto);
+            return texto.length();
+        }
+        cell.setCellValue(valor);
+        return Long.BYTES;
+    }
+
+    /**
+     * Escribe un valor leído con {@link #read} en la celda {@code index} de la fila.
+     *
+     * @return tamaño aproximado del valor en bytes (para el presupuesto de la hoja).
+     */
+    int write(Row row, int index, Object value) {
+        if (value == null) {
+            return 0;
+        }
+        Cell cell = row.createCell(index);
+        switch (tipo) {
+            case ENTERO:
+                return escribirEntero(cell, (Long) value);
+            case DECIMAL:
+                cell.setCellValue(((Double) value).doubleValue());
+                return Double.BYTES;
+            case BOOLEANO:
+                cell.setCellValue((Boolean) value);
+                return 1;
+            case FECHA: {
+                LocalDate fecha = ((java.sql.Date) value).toLocalDate();
+                if (fecha.isBefore(PRIMERA_FECHA_EXCEL)) {
+                    String texto = fecha.toString();
+                    cell.setCellValue(texto);
+                    return texto.length();
+                }
+                cell.setCellValue(fecha);
+                cell.setCellStyle(estilo);
+                return Double.BYTES;
+            }
+            case FECHA_HORA: {
+                LocalDateTime fechaHora = ((Timestamp) value).toLocalDateTime();
+                if (fechaHora.toLocalDate().isBefore(PRIMERA_FECHA_EXCEL)) {
+                    String texto = fechaHora.format(FECHA_HORA_ISO);
+                    cell.setCellValue(texto);
+                    return texto.length();
+                }
+                cell.setCellValue(fechaHora);
+                cell.setCellStyle(estilo);
+                return Double.BYTES;
+            }
+            default:
+                String texto = (String) value;
+                cell.setCellValue(texto);
+                return texto.length();
+        }
+    }
+}
@@ -3,33 +3,83 @@ package com.iesvdc.dam.acceso.databaseutil;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
-import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 import com.iesvdc.dam.acceso.conexion.Conexion;
+import com.iesvdc.dam.acceso.conexion.Config;
+import com.iesvdc.dam.acceso.conexion.ConnectionPool;
+import com.iesvdc.dam.acceso.dialecto.Dialect;
+import com.iesvdc.dam.acceso.excelutil.SchemaSheet;
 
 /**
  * Clase de ayuda que lee el contenido de la base de datos y lo
  * transforma en un {@link org.apache.poi.ss.usermodel.Workbook}.
  *
- * Cada tabla se exporta como una hoja:
+ * Cada tabla se exporta como una hoja (o varias si no cabe en una):
  * <ul>
  *  <li>Fila 0: nombres de columnas.</li>
- *  <li>Fila 1: tipos de datos según la base de datos.</li>
  *  <li>Filas siguientes: registros existentes.</li>
  * </ul>
+ * Los tipos, tamaños, nulos y claves primarias de las columnas van en la hoja oculta
+ * {@link SchemaSheet#NAME} (salvo con <b>exportSchema=false</b>), para que al volver
+ * a importar el libro las tablas se creen igual sin deducir los tipos.
+ * El libro se genera en streaming ({@link SXSSFWorkbook}): solo se mantienen en
+ * memoria las últimas filas de cada hoja. Las tablas grandes con una columna
+ * entera indexada se leen en paralelo por rangos (ver {@link RangeExporter}):
+ * <ul>
+ *  <li><b>exportParallelism</b>: conexiones de lectura simultáneas (nº de CPUs por defecto).</li>
+ *  <li><b>exportPageSize</b>: filas por página en la paginación por clave (10000).</li>
+ *  <li><b>exportSplitThreshold</b>: amplitud mínima de la clave para dividir la tabla (100000).</li>
+ * </ul>
+ * Si se define <b>exportCacheDir</b>, {@link #export(String)} es incremental: las tablas
+ * sin cambios no se consultan y sus hojas se copian de la exportación anterior
+ * (ver {@link ExportCache}).
  */
 public class DatabaseReader {
+    /** Versión del XML que se genera; si cambia, la caché incremental deja de ser válida. */
+    private static final String FORMATO = "3";
+
+    private final Properties props;
+    /** Gestor de origen, para entrecomillar los nombres en las consultas. */
+    private final Dialect dialecto;
+
+    /**
+     * Crea un exportador con la configuración de <b>config.properties</b>.
+     */
+    public DatabaseReader() {
+        this(Config.getProperties("config.properties"));
+    }
+
+    /**
+     * Crea un exportador con unas propiedades ya cargadas.
+     *
+     * @param props propiedades de conexión y opciones de exportación.
+     */
+    public DatabaseReader(Properties props) {
+        this.props = new Properties();
+        this.props.putAll(props);
+        this.dialecto = Dialect.of(this.props);
+    }
 
     /**
      * Lee todas las tablas visibles en la base de datos actual y las vuelca
@@ -39,26 +89,203 @@ public class DatabaseReader {
      * @throws SQLException si ocurre cualquier error al consultar la base de datos.
      */
     public Workbook readDatabase() throws SQLException {
-        try (Connection connection = Conexion.getConnection()) {
+        return buildWorkbook(null, new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Construye el libro con todas las tablas. Con caché, las tablas sin cambios se
+     * dejan como hojas vacías y se anotan en {@code reuse}; las exportadas de nuevo,
+     * en {@code capture}, para guardarlas al escribir el paquete.
+     */
+    private SXSSFWorkbook buildWorkbook(ExportCache cache, Map<String, Path> reuse, Map<String, Path> capture)
+            throws SQLException {
+        int paralelismo = getIntProperty("exportParallelism", Runtime.getRuntime().availableProcessors());
+        try (Connection connection = Conexion.getConnection(props);
+            ConnectionPool pool = new ConnectionPool(props, Math.max(1, paralelismo))) {
             if (connection == null) {
                 throw new SQLException("No se pudo obtener la conexión a la base de datos.");
             }
 
-            Workbook workbook = new XSSFWorkbook();
-            DatabaseMetaData metaData = connection.getMetaData(); // Obtener metadatos de la base de datos
-            String catalog = connection.getCatalog(); // Obtener el catálogo actual
+            SXSSFWorkbook workbook = new SXSSFWorkbook();
+            workbook.setCompressTempFiles(true); // Los ficheros temporales de cada hoja ocupan mucho menos
+            // Estilos compartidos por todas las hojas; se crean siempre en el mismo orden (caché incremental).
+            ColumnExtractor.Styles estilos = ColumnExtractor.Styles.create(workbook);
+            try {
+                DatabaseMetaData metaData = connection.getMetaData(); // Obtener metadatos de la base de datos
+                String catalog = connection.getCatalog(); // Obtener el catálogo actual
+                boolean conEsquema = getBooleanProperty("exportSchema", true);
+                List<SchemaSheet.Column> esquema = new ArrayList<>();
+
+                // Primero se listan todas las tablas: sus nombres quedan reservados para que
+                // las hojas de continuación de otra tabla no los ocupen.
+                List<String[]> tablas = new ArrayList<>();
+                Set<String> reservadas = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                reservadas.add(SchemaSheet.NAME);
+                try (ResultSet tables = metaData.getTables(catalog, null, "%", new String[] { "TABLE" })) { // Obtener todas las tablas
+                    while (tables.next()) { // Iterar sobre cada tabla
+                        if ("INFORMATION_SCHEMA".equalsIgnoreCase(tables.getString("TABLE_SCHEM"))) {
+                            continue; // H2 las presenta como tablas normales
+                        }
+                        String tableName = tables.getString("TABLE_NAME"); // Nombre de la tabla
+                        tablas.add(new String[] { tables.getString("TABLE_SCHEM"), tableName });
+                        reservadas.add(ShardedSheet.sheetName(tableName, 1));
+                    }
+                }
 
-            try (ResultSet tables = metaData.getTables(catalog, null, "%", new String[] { "TABLE" })) { // Obtener todas las tablas
-                while (tables.next()) { // Iterar sobre cada tabla
-                    String tableName = tables.getString("TABLE_NAME"); // Nombre de la tabla
-                    exportTable(workbook, connection, tableName); // Exportar la tabla al workbook
+                for (String[] tabla : tablas) {
+                    String tableName = tabla[1];
+                    List<String> hojas;
+                    if (cache == null) {
+                        hojas = sheetNames(exportTable(workbook, connection, pool, estilos, tableName, reservadas)); // Exportar la tabla al workbook
+                    } else {
+                        String marca = cache.marker(connection, tableName);
+                        hojas = cache.freshSheets(tableName, marca);
+                        if (hojas != null && !libres(workbook, hojas, reservadas)) {
+                            hojas = null; // Sus nombres de hoja ya no están libres: se exporta de nuevo
+                        }
+                        if (hojas != null) {
+                            // Sin cambios: hoja vacía que se sustituirá por la guardada.
+                            for (int i = 0; i < hojas.size(); i++) {
+                                Sheet hoja = workbook.createSheet(hojas.get(i));
+                                reuse.put(partName(workbook, hoja), cache.partFile(tableName, i));
+                            }
+                        } else {
+                            List<Sheet> creadas = exportTable(workbook, connection, pool, estilos, tableName, reservadas);
+                            for (int i = 0; i < creadas.size(); i++) {
+                                capture.put(partName(workbook, creadas.get(i)), cache.partFile(tableName, i));
+                            }
+                            hojas = sheetNames(creadas);
+                            cache.record(tableName, marca, hojas);
+                        }
+                    }
+                    if (conEsquema) {
+                        esquema.addAll(schemaColumns(metaData, catalog, tabla[0], tableName, hojas));
+                    }
                 }
+                if (conEsquema) {
+                    SchemaSheet.write(workbook, esquema);
+                }
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    workbook.close(); // También borra los ficheros temporales de las hojas
+                } catch (IOException cierre) {
+                    e.addSuppressed(cierre);
+                }
+                throw e;
             }
 
             return workbook;
         }
     }
 
+    /**
+     * Indica si los nombres de hoja guardados en la caché para una tabla se pueden
+     * volver a usar: ninguno existe ya en el libro y las continuaciones no ocupan el
+     * nombre de otra tabla (puede haberse creado después de la exportación anterior).
+     */
+    private boolean libres(Workbook workbook, List<String> hojas, Set<String> reservadas) {
+        for (int i = 0; i < hojas.size(); i++) {
+            if (workbook.getSheet(hojas.get(i)) != null || (i > 0 && reservadas.contains(hojas.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<String> sheetNames(List<Sheet> hojas) {
+        List<String> nombres = new ArrayList<>();
+        for (Sheet hoja : hojas) {
+            nombres.add(hoja.getSheetName());
+        }
+        return nombres;
+    }
+
+    /**
+     * Definición de las columnas de una tabla para la hoja de esquema, según los
+     * metadatos de la base de datos.
+     *
+     * @param hojas hojas en las que se han exportado sus filas.
+     */
+    private List<SchemaSheet.Column> schemaColumns(DatabaseMetaData metaData, String catalog, String schema,
+            String tableName, List<String> hojas) throws SQLException {
+        Map<String, Integer> clave = new HashMap<>();
+        try (ResultSet pk = metaData.getPrimaryKeys(catalog, schema, tableName)) {
+            while (pk.next()) {
+                clave.put(pk.getString("COLUMN_NAME"), pk.getInt("KEY_SEQ"));
+            }
+        }
+
+        List<SchemaSheet.Column> columnas = new ArrayList<>();
+        try (ResultSet rs = metaData.getColumns(catalog, schema, tableName, "%")) {
+            while (rs.next()) { // Una fila por columna, en orden
+                String nombre = rs.getString("COLUMN_NAME");
+                String tipo = rs.getString("TYPE_NAME");
+                int tipoJdbc = rs.getInt("DATA_TYPE");
+                int tamano = rs.getInt("COLUMN_SIZE");
+                int decimales = rs.getInt("DECIMAL_DIGITS");
+                boolean conSigno = !tipo.toUpperCase().contains("UNSIGNED");
+                columnas.add(new SchemaSheet.Column(tableName, nombre,
+                    SchemaSheet.fieldType(tipoJdbc, tamano, conSigno),
+                    exactType(tipo, tipoJdbc, tamano, decimales), tipoJdbc, tamano, decimales,
+                    rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls,
+                    clave.getOrDefault(nombre, 0), hojas, dialecto.getName()));
+            }
+        }
+        return columnas;
+    }
+
+    /**
+     * Tipo de la columna tal como se escribiría en su <code>CREATE TABLE</code>: el
+     * nombre del tipo con su tamaño o precisión cuando el gestor no lo incluye. Los
+     * modificadores de MySQL van detrás: <code>DECIMAL(10,2) UNSIGNED</code>.
+     */
+    static String exactType(String nombre, int tipoJdbc, int tamano, int decimales) {
+        String mayusculas = nombre.toUpperCase();
+        if (mayusculas.startsWith("ENUM") || mayusculas.startsWith("SET")) {
+            // Los valores permitidos no están en los metadatos.
+            return "VARCHAR(" + tamano + ")";
+        }
+        if (nombre.contains("(")) {
+            return nombre;
+        }
+        // TYPE_NAME de MySQL: "DECIMAL UNSIGNED", "INT UNSIGNED ZEROFILL"...
+        int corte = mayusculas.length();
+        for (String modificador : List.of(" UNSIGNED", " ZEROFILL")) {
+            int i = mayusculas.indexOf(modificador);
+            if (i >= 0) {
+                corte = Math.min(corte, i);
+            }
+        }
+        String tipo = nombre.substring(0, corte);
+        String sufijo = nombre.substring(corte);
+        switch (tipoJdbc) {
+            case Types.CHAR:
+            case Types.NCHAR:
+            case Types.VARCHAR:
+            case Types.NVARCHAR:
+            case Types.BINARY:
+            case Types.VARBINARY:
+                // Sin límite (VARCHAR de PostgreSQL, TEXT) el tamaño es enorme o 0.
+                return tamano > 0 && tamano < Integer.MAX_VALUE ? tipo + "(" + tamano + ")" + sufijo : nombre;
+            case Types.BIT:
+                return tamano > 1 ? tipo + "(" + tamano + ")" + sufijo : nombre;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return tamano > 0 && tamano < 1000 ? tipo + "(" + tamano + "," + decimales + ")" + sufijo : nombre;
+            default:
+                return nombre;
+        }
+    }
+
+    /**
+     * Nombre de la parte del paquete que contiene la hoja, sin la barra inicial
+     * (tal y como aparece en el zip).
+     */
+    private String partName(SXSSFWorkbook workbook, Sheet sheet) {
+        return workbook.getXSSFWorkbook().getSheet(sheet.getSheetName())
+            .getPackagePart().getPartName().getName().substring(1);
+    }
+
     /**
      * Exporta todas las tablas de la base de datos a un fichero Excel.
      *
@@ -67,80 +294,200 @@ public class DatabaseReader {
      * @throws IOException si no se puede crear o escribir el fichero.
      */
     public void export(String outputPath) throws SQLException, IOException {
-        Workbook workbook = readDatabase();
-
         File outputFile = new File(outputPath); // Crear el archivo de salida
         File parent = outputFile.getParentFile(); // Obtener el directorio padre
         if (parent != null && !parent.exists()) {
             parent.mkdirs(); // Crear directorios padre si no existen
         }
 
-        try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-            workbook.write(fos);
+        ExportCache cache = ExportCache.open(props, fingerprint());
+        if (cache == null) {
+            Workbook workbook = readDatabase();
+            try (FileOutputStream fos = new FileOutputStream(outputFile)) {
+                workbook.write(fos);
+            } finally {
+                workbook.close(); // En streaming también borra los ficheros temporales de las hojas
+            }
+            return;
+        }
+
+        // Exportación incremental: POI escribe un paquete provisional que luego se completa con la caché.
+        Map<String, Path> reuse = new HashMap<>();
+        Map<String, Path> capture = new HashMap<>();
+        SXSSFWorkbook workbook = buildWorkbook(cache, reuse, capture);
+        Path provisional = Files.createTempFile(outputFile.getAbsoluteFile().getParentFile().toPath(), "export", ".xlsx");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(provisional.toFile())) {
+                workbook.write(fos);
+            } finally {
+                workbook.close(); // En streaming también borra los ficheros temporales de las hojas
+            }
+            ExportCache.writePackage(provisional, outputFile.toPath(), reuse, capture);
+            cache.save();
+        } finally {
+            Files.deleteIfExists(provisional);
         }
-        workbook.close();
+        System.out.println("Hojas reutilizadas de la caché: " + reuse.size() + ", exportadas de nuevo: " + capture.size());
+    }
+
+    /**
+     * Huella de todo lo que influye en el XML de las hojas, para invalidar la caché.
+     */
+    private String fingerprint() {
+        return FORMATO + "|" + props.getProperty("exportChangeMarker", "update_time")
+            + "|" + maxRowsPerSheet() + "|" + getLongProperty("exportMaxBytesPerSheet", 0);
     }
 
     /**
-     * Exporta una tabla concreta a una hoja dentro del {@link Workbook} indicado.
-     * Se crea una hoja con el nombre de la tabla, encabezados con los nombres de columna,
-     * una segunda fila con los tipos SQL y las filas posteriores con los registros.
+     * Exporta una tabla concreta a una o varias hojas dentro del {@link Workbook} indicado.
+     * Se crea una hoja con el nombre de la tabla, encabezados con los nombres de columna
+     * y las filas posteriores con los registros. Cuando una hoja llega a
+     * <b>exportMaxRowsPerSheet</b> filas (el máximo de Excel por defecto) o a
+     * <b>exportMaxBytesPerSheet</b> bytes aproximados, se continúa en
+     * <code>tabla_2</code>, <code>tabla_3</code>, ... (ver {@link ShardedSheet}).
+     * <p>
+     * Si la tabla tiene una columna entera indexada y su amplitud supera
+     * <b>exportSplitThreshold</b>, se lee en paralelo con {@link RangeExporter};
+     * si no, con un único <code>SELECT *</code>.
      *
-     * @param workbook   libro donde se añadirá la hoja.
+     * @param workbook   libro donde se añadirán las hojas.
      * @param connection conexión activa a la base de datos.
+     * @param pool       conexiones para la lectura en paralelo.
+     * @param estilos    estilos de fecha del libro.
      * @param tableName  nombre de la tabla que se va a exportar.
+     * @param reservadas nombres de hoja que no pueden usar las continuaciones.
+     * @return las hojas creadas, en orden.
      * @throws SQLException si la consulta falla.
      */
-    private void exportTable(Workbook workbook, Connection connection, String tableName) throws SQLException {
-        Sheet sheet = workbook.createSheet(tableName); // Crear una nueva hoja para la tabla
+    private List<Sheet> exportTable(Workbook workbook, Connection connection, ConnectionPool pool,
+            ColumnExtractor.Styles estilos, String tableName, Set<String> reservadas) throws SQLException {
+        RangeExporter.Column columna = pool.getMaxSize() > 1
+            ? RangeExporter.findColumn(connection.getMetaData(), connection.getCatalog(), tableName)
+            : null;
+        if (columna != null) {
+            // Cabecera y extractores a partir de una consulta vacía; los datos llegan por rangos.
+            ColumnExtractor[] extractores;
+            ShardedSheet hojas;
+            try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT * FROM " + dialecto.quote(tableName) + " WHERE 1 = 0")) {
+                hojas = newShardedSheet(workbook, tableName, rs.getMetaData(), reservadas);
+                extractores = ColumnExtractor.forColumns(rs.getMetaData(), estilos);
+            }
+            RangeExporter rangos = new RangeExporter(dialecto, tableName, columna, pool,
+                getIntProperty("exportPageSize", 10000), extractores);
+            long[] limites = rangos.bounds(connection);
+            if (limites == null) {
+                return hojas.getSheets();
+            }
+            if ((double) limites[1] - limites[0] >= getIntProperty("exportSplitThreshold", 100000)) {
+                rangos.export(limites[0], limites[1], fila -> hojas.addBytes(writeRow(hojas.nextRow(), extractores, fila)));
+                return hojas.getSheets();
+            }
+            // Tabla pequeña: la hoja ya creada se rellena con la lectura secuencial.
+            return exportSequential(workbook, connection, estilos, tableName, hojas, reservadas);
+        }
 
+        return exportSequential(workbook, connection, estilos, tableName, null, reservadas);
+    }
+
+    /**
+     * Lee la tabla con un único <code>SELECT *</code> y escribe sus filas en las hojas.
+     *
+     * @param hojas hojas ya creadas o {@code null} para crearlas con los metadatos de la consulta.
+     * @param reservadas nombres de hoja que no pueden usar las continuaciones.
+     */
+    private List<Sheet> exportSequential(Workbook workbook, Connection connection, ColumnExtractor.Styles estilos,
+            String tableName, ShardedSheet hojas, Set<String> reservadas) throws SQLException {
         try (Statement statement = connection.createStatement(); // Crear una declaración SQL
-            ResultSet rs = statement.executeQuery("SELECT * FROM `" + tableName + "`")) {
+            ResultSet rs = statement.executeQuery("SELECT * FROM " + dialecto.quote(tableName))) {
 
             ResultSetMetaData rsMeta = rs.getMetaData(); // Obtener metadatos del conjunto de resultados
             int columnCount = rsMeta.getColumnCount(); // Obtener el número de columnas
-
-            Row headerRow = sheet.createRow(0); // Crear la fila de encabezado
-
-            for (int i = 1; i <= columnCount; i++) { // Iterar sobre cada columna
-                Cell headerCell = headerRow.createCell(i - 1); 
-                headerCell.setCellValue(rsMeta.getColumnLabel(i)); 
+            if (hojas == null) {
+                hojas = newShardedSheet(workbook, tableName, rsMeta, reservadas); // Hoja con la fila de encabezado
             }
+            ColumnExtractor[] extractores = ColumnExtractor.forColumns(rsMeta, estilos); // Un lector por columna
 
-            int rowIndex = 1; // Índice para las filas de datos
             while (rs.next()) { // Iterar sobre cada fila del conjunto de resultados
-                Row dataRow = sheet.createRow(rowIndex++); 
+                Row dataRow = hojas.nextRow(); // Siguiente fila, en una hoja nueva si la actual está llena
+                long bytes = 0;
                 for (int i = 1; i <= columnCount; i++) {
-                    Cell cell = dataRow.createCell(i - 1);
-                    Object value = rs.getObject(i);
-                    setCellValue(cell, value); // Establecer el valor de la celda
+                    bytes += extractores[i - 1].copy(rs, i, dataRow); // Copiar el valor con el getter de su tipo
                 }
+                hojas.addBytes(bytes);
             }
+            return hojas.getSheets();
+        }
+    }
+
+    /**
+     * Crea la primera hoja de la tabla con los nombres de columna como encabezado.
+     */
+    private ShardedSheet newShardedSheet(Workbook workbook, String tableName, ResultSetMetaData rsMeta,
+            Set<String> reservadas) throws SQLException {
+        String[] cabecera = new String[rsMeta.getColumnCount()];
+        for (int i = 1; i <= cabecera.length; i++) { // Iterar sobre cada columna
+            cabecera[i - 1] = rsMeta.getColumnLabel(i);
         }
+        return new ShardedSheet(workbook, tableName, cabecera, maxRowsPerSheet(),
+            getLongProperty("exportMaxBytesPerSheet", 0), reservadas);
+    }
+
+    private int maxRowsPerSheet() {
+        return getIntProperty("exportMaxRowsPerSheet", ShardedSheet.MAX_FILAS_EXCEL);
     }
 
     /**
-     * Escribe un valor Java en una celda Excel utilizando un formato legible.
+     * Escribe en una fila los valores leídos por {@link RangeExporter}.
      *
-     * @param cell  celda a rellenar.
-     * @param value valor obtenido desde la base de datos.
+     * @return tamaño aproximado de la fila en bytes.
      */
-    private void setCellValue(Cell cell, Object value) {
-        if (value == null) {
-            return;
+    private long writeRow(Row dataRow, ColumnExtractor[] extractores, Object[] values) {
+        long bytes = 0;
+        for (int i = 0; i < values.length; i++) {
+            bytes += extractores[i].write(dataRow, i, values[i]);
+        }
+        return bytes;
+    }
+
+    /**
+     * Lee una propiedad entera o devuelve el valor por defecto si no está definida.
+     */
+    private int getIntProperty(String key, int defaultValue) {
+        String valor = props.getProperty(key);
+        if (valor == null || valor.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("La propiedad " + key + " debe ser un número entero: " + valor, e);
+        }
+    }
+
+    /**
+     * Lee una propiedad booleana o devuelve el valor por defecto si no está definida.
+     */
+    private boolean getBooleanProperty(String key, boolean defaultValue) {
+        String valor = props.getProperty(key);
+        if (valor == null || valor.isBlank()) {
+            return defaultValue;
         }
+        return Boolean.parseBoolean(valor.trim());
+    }
 
-        // Determinar el tipo de dato y establecer el valor en la celda
-        if (value instanceof Number number) {
-            cell.setCellValue(number.doubleValue());
-        } else if (value instanceof java.sql.Date date) {
-            cell.setCellValue(date.toLocalDate().toString());
-        } else if (value instanceof java.sql.Timestamp timestamp) {
-            cell.setCellValue(timestamp.toLocalDateTime().toString());
-        } else if (value instanceof Boolean bool) {
-            cell.setCellValue(bool);
-        } else {
-            cell.setCellValue(value.toString()); // Tratar como cadena por defecto
+    /**
+     * Lee una propiedad entera larga o devuelve el valor por defecto si no está definida.
+     */
+    private long getLongProperty(String key, long defaultValue) {
+        String valor = props.getProperty(key);
+        if (valor == null || valor.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("La propiedad " + key + " debe ser un número entero: " + valor, e);
         }
     }
-}
\ No newline at end of file
+}
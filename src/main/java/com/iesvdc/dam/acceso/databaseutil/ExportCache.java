@@ -0,0 +1,276 @@
+package com.iesvdc.dam.acceso.databaseutil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import com.iesvdc.dam.acceso.dialecto.Dialect;
+
+/**
+ * Caché de la exportación incremental.
+ * <p>
+ * Para cada tabla guarda una marca de cambio y el XML de sus hojas tal y como
+ * se escribió en el último libro. Si la marca no ha cambiado, la tabla no se
+ * vuelve a consultar: se crea una hoja vacía y al escribir el paquete su parte
+ * XML se sustituye por la guardada (ver {@link #writePackage}).
+ * <p>
+ * La marca se elige con <b>exportChangeMarker</b>:
+ * <ul>
+ *   <li><b>update_time</b> (por defecto) o <b>checksum</b>: la marca propia del gestor
+ *       ({@link Dialect#changeMarker}); solo MySQL las tiene.</li>
+ *   <li><b>watermark</b>: <code>MAX</code> y <code>COUNT(*)</code> de la columna
+ *       <b>exportWatermarkColumn</b> (o <b>exportWatermarkColumn.&lt;tabla&gt;</b>).</li>
+ * </ul>
+ * Si el gestor no tiene la marca pedida, o no la da para una tabla, se usa la de
+ * <b>watermark</b> si hay columna configurada; si no, la tabla se exporta siempre.
+ * El índice guarda además una huella de la configuración; si cambia, la caché se descarta.
+ */
+class ExportCache {
+    private static final String INDICE = "index.properties";
+
+    private final Path dir;
+    private final Properties props;
+    private final Dialect dialecto;
+    private final Properties index = new Properties();
+
+    /**
+     * Abre la caché del directorio indicado en <b>exportCacheDir</b>.
+     *
+     * @param props propiedades de exportación.
+     * @param fingerprint huella de todo lo que cambia el XML generado (formato, estilos, opciones).
+     * @return la caché o {@code null} si <b>exportCacheDir</b> no está definido.
+     */
+    static ExportCache open(Properties props, String fingerprint) throws IOException {
+        String dir = props.getProperty("exportCacheDir");
+        if (dir == null || dir.isBlank()) {
+            return null;
+        }
+        return new ExportCache(Path.of(dir.trim()), props, fingerprint);
+    }
+
+    private ExportCache(Path dir, Properties props, String fingerprint) throws IOException {
+        this.dir = dir;
+        this.props = props;
+        this.dialecto = Dialect.of(props);
+        Files.createDirectories(dir);
+
+        Path indice = dir.resolve(INDICE);
+        if (Files.exists(indice)) {
+            try (InputStream is = Files.newInputStream(indice)) {
+                index.load(is);
+            }
+        }
+        if (!fingerprint.equals(index.getProperty("fingerprint"))) {
+            index.clear(); // Otra versión u otras opciones: nada de lo guardado sirve.
+        }
+        index.setProperty("fingerprint", fingerprint);
+
+        String modo = modo();
+        if ((modo.equals("update_time") || modo.equals("checksum")) && !dialecto.supportsChangeMarker(modo)) {
+            System.err.println(dialecto.getName() + " no tiene la marca de cambio " + modo
+                + ": se usa exportWatermarkColumn o, sin ella, las tablas se exportan siempre.");
+        }
+    }
+
+    private String modo() {
+        return props.getProperty("exportChangeMarker", "update_time").trim().toLowerCase();
+    }
+
+    /**
+     * Calcula la marca de cambio actual de una tabla.
+     *
+     * @return la marca o {@code null} si no se puede saber si la tabla cambió.
+     */
+    String marker(Connection connection, String tableName) throws SQLException {
+        String modo = modo();
+        String columna = props.getProperty("exportWatermarkColumn." + tableName,
+            props.getProperty("exportWatermarkColumn"));
+        switch (modo) {
+            case "update_time":
+            case "checksum":
+                String marca = dialecto.supportsChangeMarker(modo)
+                    ? dialecto.changeMarker(connection, tableName, modo)
+                    : null;
+                if (marca != null || columna == null || columna.isBlank()) {
+                    return marca;
+                }
+                return watermark(connection, tableName, columna);
+
+            case "watermark":
+                if (columna == null || columna.isBlank()) {
+                    return null;
+                }
+                return watermark(connection, tableName, columna);
+
+            default:
+                throw new IllegalArgumentException("Valor no reconocido para exportChangeMarker: " + modo);
+        }
+    }
+
+    /**
+     * Marca de agua: <code>MAX</code> de la columna y <code>COUNT(*)</code> de la tabla.
+     */
+    private String watermark(Connection connection, String tableName, String columna) throws SQLException {
+        try (Statement st = connection.createStatement();
+            ResultSet rs = st.executeQuery("SELECT MAX(" + dialecto.quote(columna.trim())
+                + "), COUNT(*) FROM " + dialecto.quote(tableName))) {
+            rs.next();
+            return "watermark:" + rs.getString(1) + "/" + rs.getLong(2);
+        }
+    }
+
+    /**
+     * Devuelve los nombres de las hojas guardadas para la tabla si su marca sigue
+     * siendo la misma y todas sus partes están en disco.
+     *
+     * @return nombres de hoja en orden o {@code null} si hay que volver a exportarla.
+     */
+    List<String> freshSheets(String tableName, String marker) {
+        if (marker == null || !marker.equals(index.getProperty("marker." + tableName))) {
+            return null;
+        }
+        String hojas = index.getProperty("sheets." + tableName);
+        if (hojas == null) {
+            return null;
+        }
+        List<String> nombres = Arrays.asList(hojas.split("/"));
+        for (int i = 0; i < nombres.size(); i++) {
+            if (!Files.isRegularFile(partFile(tableName, i))) {
+                return null;
+            }
+        }
+        return nombres;
+    }
+
+    /**
+     * Fichero donde se guarda la parte XML de la hoja {@code i} de una tabla.
+     */
+    Path partFile(String tableName, int i) {
+        return dir.resolve(URLEncoder.encode(tableName, StandardCharsets.UTF_8) + "." + i + ".xml");
+    }
+
+    /**
+     * Registra la marca y las hojas de una tabla recién exportada. Las partes se
+     * guardan en {@link #writePackage}; el índice, en {@link #save()}.
+     */
+    void record(String tableName, String marker, List<String> sheetNames) {
+        if (marker == null) {
+            index.remove("marker." + tableName);
+            index.remove("sheets." + tableName);
+            return;
+        }
+        index.setProperty("marker." + tableName, marker);
+        index.setProperty("sheets." + tableName, String.join("/", sheetNames));
+    }
+
+    /**
+     * Copia el paquete generado por POI al fichero de salida:
+     * <ul>
+     *   <li>Las partes de {@code reuse} se sustituyen por el fichero de caché indicado.</li>
+     *   <li>Las partes de {@code capture} se copian además a su fichero de caché.</li>
+     *   <li>El resto se copia tal cual.</li>
+     * </ul>
+     * El libro se escribe en un temporal del mismo directorio y se mueve al final de
+     * una vez: si algo falla, el fichero de salida anterior queda intacto y las partes
+     * de la caché no cambian.
+     *
+     * @param generated paquete .xlsx escrito por POI.
+     * @param output fichero final.
+     * @param reuse parte del paquete (p. ej. <code>xl/worksheets/sheet1.xml</code>) -&gt; fichero de caché.
+     * @param capture parte del paquete -&gt; fichero de caché donde guardarla.
+     */
+    static void writePackage(Path generated, Path output, Map<String, Path> reuse, Map<String, Path> capture)
+            throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        List<Path> temporales = new ArrayList<>();
+        Path salida = Files.createTempFile(output.toAbsolutePath().getParent(), "export", ".xlsx.tmp");
+        try {
+            try (ZipFile zip = new ZipFile(generated.toFile());
+                ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(salida))) {
+                Enumeration<? extends ZipEntry> entradas = zip.entries();
+                while (entradas.hasMoreElements()) {
+                    ZipEntry entrada = entradas.nextElement();
+                    String nombre = entrada.getName();
+                    zos.putNextEntry(new ZipEntry(nombre));
+
+                    Path cacheada = reuse.get(nombre);
+                    if (cacheada != null) {
+                        Files.copy(cacheada, zos);
+                    } else if (capture.containsKey(nombre)) {
+                        // Escribimos primero en un temporal: la caché solo cambia si el paquete se completa.
+                        Path destino = capture.get(nombre);
+                        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+                        temporales.add(temporal);
+                        try (InputStream is = zip.getInputStream(entrada);
+                            OutputStream copia = Files.newOutputStream(temporal)) {
+                            int n;
+                            while ((n = is.read(buffer)) > 0) {
+                                zos.write(buffer, 0, n);
+                                copia.write(buffer, 0, n);
+                            }
+                        }
+                    } else {
+                        try (InputStream is = zip.getInputStream(entrada)) {
+                            is.transferTo(zos);
+                        }
+                    }
+                    zos.closeEntry();
+                }
+            }
+            mover(salida, output);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(salida);
+            for (Path temporal : temporales) {
+                Files.deleteIfExists(temporal);
+            }
+            throw e;
+        }
+
+        for (Path temporal : temporales) {
+            String nombre = temporal.getFileName().toString();
+            Files.move(temporal, temporal.resolveSibling(nombre.substring(0, nombre.length() - 4)),
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Sustituye el fichero de salida de una vez, para que nunca quede a medio escribir.
+     */
+    private static void mover(Path origen, Path destino) throws IOException {
+        try {
+            Files.move(origen, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(origen, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Guarda el índice de la caché. Debe llamarse después de {@link #writePackage}.
+     */
+    void save() throws IOException {
+        Path temporal = dir.resolve(INDICE + ".tmp");
+        try (OutputStream os = Files.newOutputStream(temporal)) {
+            index.store(os, "Cache de exportacion incremental");
+        }
+        Files.move(temporal, dir.resolve(INDICE), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
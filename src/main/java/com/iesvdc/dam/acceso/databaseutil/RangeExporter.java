@@ -0,0 +1,343 @@
+package com.iesvdc.dam.acceso.databaseutil;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.iesvdc.dam.acceso.conexion.ConnectionPool;
+import com.iesvdc.dam.acceso.dialecto.Dialect;
+
+/**
+ * Lee una tabla grande en paralelo dividiéndola en rangos de una columna entera.
+ * <p>
+ * La columna de corte es la clave primaria si es una única columna entera, o
+ * en su defecto la primera columna entera NOT NULL de un índice (que solo cuenta
+ * como única si el índice es único y de una sola columna). Los rangos se
+ * calculan a partes iguales entre <code>MIN</code> y <code>MAX</code> y cada uno
+ * se lee en su propia conexión del {@link ConnectionPool}:
+ * <ul>
+ *   <li>Si la columna es única, con paginación por clave
+ *       (<code>WHERE k &gt; ? ORDER BY k LIMIT n</code>), de modo que ninguna
+ *       consulta dura más que una página.</li>
+ *   <li>Si no lo es, con una consulta por rango (la paginación por clave
+ *       se saltaría filas repetidas en el límite de página).</li>
+ * </ul>
+ * Las filas se entregan a un {@link RowSink} en el orden de la columna, rango a
+ * rango, aunque los rangos siguientes ya se estén leyendo en segundo plano. Cada
+ * rango guarda como mucho {@link #PAGINAS_EN_COLA} páginas en memoria.
+ * <p>
+ * Sin paginación, el rango se lee con {@link Dialect#streamResults} para que el
+ * driver no lo traiga entero. Aun así, mientras espera turno el rango mantiene
+ * abiertos su resultado y su conexión del pool (y en MySQL, sin
+ * <code>useCursorFetch</code>, la consulta sigue en curso en el servidor).
+ */
+class RangeExporter {
+    /** Páginas que un rango puede adelantar antes de esperar al escritor. */
+    private static final int PAGINAS_EN_COLA = 2;
+    /** Rangos por hilo: más rangos reparten mejor las claves con huecos. */
+    private static final int RANGOS_POR_HILO = 4;
+
+    /**
+     * Recibe las filas leídas, en orden, en el hilo que llamó a
+     * {@link RangeExporter#export(long, long, RowSink)}.
+     */
+    interface RowSink {
+        void accept(Object[] fila) throws SQLException;
+    }
+
+    /** Columna por la que se divide la tabla. */
+    record Column(String name, boolean unique) { }
+
+    /** Página vacía que marca el final de un rango. */
+    private static final List<Object[]> FIN = new ArrayList<>();
+
+    /** Rango cerrado [desde, hasta] con las páginas ya leídas y el posible error. */
+    private static class Rango {
+        final long desde;
+        final long hasta;
+        final BlockingQueue<List<Object[]>> paginas = new ArrayBlockingQueue<>(PAGINAS_EN_COLA);
+        /** Se escribe antes de encolar {@link #FIN}, así que el escritor lo ve al recibirlo. */
+        volatile SQLException error;
+
+        Rango(long desde, long hasta) {
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+    }
+
+    private final Dialect dialecto;
+    private final String tableName;
+    private final Column column;
+    private final ConnectionPool pool;
+    private final int pageSize;
+    /** Extractores de las columnas de <code>SELECT *</code>; solo se usa su lectura. */
+    private final ColumnExtractor[] extractores;
+
+    RangeExporter(Dialect dialecto, String tableName, Column column, ConnectionPool pool, int pageSize,
+            ColumnExtractor[] extractores) {
+        this.dialecto = dialecto;
+        this.tableName = tableName;
+        this.column = column;
+        this.pool = pool;
+        this.pageSize = pageSize;
+        this.extractores = extractores;
+    }
+
+    /**
+     * Busca una columna entera por la que dividir la tabla.
+     *
+     * @return la columna elegida o {@code null} si la tabla no tiene ninguna apta.
+     */
+    static Column findColumn(DatabaseMetaData metaData, String catalog, String tableName) throws SQLException {
+        // 1) Clave primaria de una sola columna.
+        List<String> pk = new ArrayList<>();
+        try (ResultSet rs = metaData.getPrimaryKeys(catalog, null, tableName)) {
+            while (rs.next()) {
+                pk.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        if (pk.size() == 1 && esEnteraNoNula(metaData, catalog, tableName, pk.get(0))) {
+            return new Column(pk.get(0), true);
+        }
+
+        // 2) Primera columna de un índice. Solo un índice único de una sola columna
+        //    permite paginar: en uno compuesto la primera columna se repite, y la
+        //    paginación por clave se saltaría las filas repetidas en el límite de página.
+        Map<String, Integer> columnasPorIndice = new HashMap<>();
+        Map<String, Column> primeras = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(catalog, null, tableName, false, true)) {
+            while (rs.next()) {
+                String indice = rs.getString("INDEX_NAME");
+                String nombre = rs.getString("COLUMN_NAME");
+                if (indice == null || nombre == null) {
+                    continue;
+                }
+                columnasPorIndice.merge(indice, 1, Integer::sum);
+                if (rs.getShort("ORDINAL_POSITION") == 1) {
+                    primeras.put(indice, new Column(nombre, !rs.getBoolean("NON_UNIQUE")));
+                }
+            }
+        }
+        Column candidata = null;
+        for (Map.Entry<String, Column> primera : primeras.entrySet()) {
+            Column c = primera.getValue();
+            if (!esEnteraNoNula(metaData, catalog, tableName, c.name())) {
+                continue;
+            }
+            if (c.unique() && columnasPorIndice.get(primera.getKey()) == 1) {
+                return c;
+            }
+            if (candidata == null) {
+                candidata = new Column(c.name(), false);
+            }
+        }
+        return candidata;
+    }
+
+    private static boolean esEnteraNoNula(DatabaseMetaData metaData, String catalog, String tableName, String columnName)
+            throws SQLException {
+        try (ResultSet rs = metaData.getColumns(catalog, null, tableName, columnName)) {
+            if (!rs.next()) {
+                return false;
+            }
+            int tipo = rs.getInt("DATA_TYPE");
+            boolean entera = tipo == Types.TINYINT || tipo == Types.SMALLINT
+                || tipo == Types.INTEGER || tipo == Types.BIGINT;
+            return entera && rs.getInt("NULLABLE") == DatabaseMetaData.columnNoNulls;
+        }
+    }
+
+    /**
+     * Lee <code>MIN</code> y <code>MAX</code> de la columna de corte.
+     *
+     * @return {mínimo, máximo} o {@code null} si la tabla está vacía.
+     */
+    long[] bounds(Connection connection) throws SQLException {
+        try (Statement st = connection.createStatement();
+            ResultSet rs = st.executeQuery("SELECT MIN(" + dialecto.quote(column.name()) + "), MAX("
+                + dialecto.quote(column.name()) + ") FROM " + dialecto.quote(tableName))) {
+            rs.next();
+            long min = rs.getLong(1);
+            if (rs.wasNull()) {
+                return null;
+            }
+            return new long[] { min, rs.getLong(2) };
+        }
+    }
+
+    /**
+     * Lee la tabla completa en paralelo y entrega sus filas en orden.
+     *
+     * @param min valor mínimo de la columna, obtenido con {@link #bounds(Connection)}.
+     * @param max valor máximo de la columna.
+     * @param sink destino de las filas.
+     */
+    void export(long min, long max, RowSink sink) throws SQLException {
+        List<Rango> rangos = new ArrayList<>();
+        for (long[] limite : dividir(min, max, pool.getMaxSize() * RANGOS_POR_HILO)) {
+            rangos.add(new Rango(limite[0], limite[1]));
+        }
+
+        // Un hilo por conexión; los rangos se atienden en orden de llegada.
+        ExecutorService executor = Executors.newFixedThreadPool(pool.getMaxSize());
+        try {
+            for (Rango rango : rangos) {
+                executor.execute(() -> leerRango(rango));
+            }
+
+            // Consumimos los rangos en orden: así la salida queda ordenada por la columna.
+            for (Rango rango : rangos) {
+                List<Object[]> pagina;
+                while ((pagina = tomar(rango.paginas)) != FIN) {
+                    for (Object[] fila : pagina) {
+                        sink.accept(fila);
+                    }
+                }
+                if (rango.error != null) {
+                    throw rango.error;
+                }
+            }
+        } finally {
+            // Si el escritor falla, los lectores bloqueados se interrumpen.
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Divide [min, max] en como mucho {@code partes} rangos cerrados consecutivos.
+     */
+    static List<long[]> dividir(long min, long max, int partes) {
+        List<long[]> rangos = new ArrayList<>();
+        // Trabajamos con double para no desbordar con claves extremas.
+        double paso = Math.max(1, ((double) max - (double) min + 1) / partes);
+        long desde = min;
+        for (int i = 1; desde <= max; i++) {
+            long hasta = i == partes ? max : (long) Math.min((double) max, min + paso * i - 1);
+            if (hasta < desde) {
+                continue;
+            }
+            rangos.add(new long[] { desde, hasta });
+            if (hasta == max) {
+                break;
+            }
+            desde = hasta + 1;
+        }
+        return rangos;
+    }
+
+    /**
+     * Lee un rango en una conexión propia y deja sus páginas en la cola.
+     * Termina siempre con {@link #FIN}, también si hay un error.
+     */
+    private void leerRango(Rango rango) {
+        String k = dialecto.quote(column.name());
+        String base = "SELECT * FROM " + dialecto.quote(tableName) + " WHERE ";
+        try {
+            Connection conn = pool.borrow();
+            try {
+                if (column.unique()) {
+                    leerPaginado(conn, base + k + " >= ? AND " + k + " <= ? ORDER BY " + k + " LIMIT ?",
+                        base + k + " > ? AND " + k + " <= ? ORDER BY " + k + " LIMIT ?", rango);
+                } else {
+                    leerCompleto(conn, base + k + " >= ? AND " + k + " <= ? ORDER BY " + k, rango);
+                }
+            } finally {
+                pool.release(conn);
+            }
+        } catch (SQLException e) {
+            rango.error = e;
+        } catch (RuntimeException e) {
+            rango.error = new SQLException("Error al leer la tabla " + tableName + " en paralelo.", e);
+        } catch (InterruptedException e) {
+            // Solo ocurre si el escritor ha abandonado la exportación.
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            rango.paginas.put(FIN);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void leerPaginado(Connection conn, String primeraSql, String siguienteSql, Rango rango)
+            throws SQLException, InterruptedException {
+        try (PreparedStatement primera = conn.prepareStatement(primeraSql);
+            PreparedStatement siguiente = conn.prepareStatement(siguienteSql)) {
+            PreparedStatement ps = primera;
+            long clave = rango.desde;
+            while (true) {
+                ps.setLong(1, clave);
+                ps.setLong(2, rango.hasta);
+                ps.setInt(3, pageSize);
+                List<Object[]> pagina = new ArrayList<>(pageSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    int columnaClave = rs.findColumn(column.name());
+                    while (rs.next()) {
+                        pagina.add(leerFila(rs));
+                        clave = rs.getLong(columnaClave);
+                    }
+                }
+                if (!pagina.isEmpty()) {
+                    rango.paginas.put(pagina);
+                }
+                if (pagina.size() < pageSize) {
+                    return;
+                }
+                ps = siguiente;
+            }
+        }
+    }
+
+    private void leerCompleto(Connection conn, String sql, Rango rango) throws SQLException, InterruptedException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            // Sin esto, MySQL trae el rango entero a memoria antes de la primera fila.
+            dialecto.streamResults(conn, ps, pageSize);
+            ps.setLong(1, rango.desde);
+            ps.setLong(2, rango.hasta);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Object[]> pagina = new ArrayList<>(pageSize);
+                while (rs.next()) {
+                    pagina.add(leerFila(rs));
+                    if (pagina.size() == pageSize) {
+                        rango.paginas.put(pagina);
+                        pagina = new ArrayList<>(pageSize);
+                    }
+                }
+                if (!pagina.isEmpty()) {
+                    rango.paginas.put(pagina);
+                }
+            }
+        }
+    }
+
+    private Object[] leerFila(ResultSet rs) throws SQLException {
+        Object[] fila = new Object[extractores.length];
+        for (int i = 0; i < fila.length; i++) {
+            fila[i] = extractores[i].read(rs, i + 1);
+        }
+        return fila;
+    }
+
+    private static List<Object[]> tomar(BlockingQueue<List<Object[]>> cola) throws SQLException {
+        try {
+            return cola.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando filas de la exportación en paralelo.", e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.iesvdc.dam.acceso.databaseutil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * Hoja de exportación que se reparte en varias hojas cuando se supera un
+ * presupuesto de filas o de bytes.
+ * <p>
+ * La primera hoja se llama como la tabla; las siguientes <code>tabla_2</code>,
+ * <code>tabla_3</code>, ... (recortando el nombre de la tabla si hace falta para
+ * no pasar de 31 caracteres). Si uno de esos nombres ya está ocupado en el libro o
+ * es el de otra tabla de la exportación, se salta al siguiente número libre. Todas
+ * repiten la fila de cabecera. El nombre no basta para saber que una hoja es una
+ * continuación (puede existir una tabla <code>ventas_2</code>): las hojas de cada
+ * tabla se anotan en la hoja de esquema, y con ella
+ * {@link com.iesvdc.dam.acceso.excelutil.ExcelReader} las vuelve a unir al importar.
+ */
+class ShardedSheet {
+    /** Filas de datos que caben en una hoja de Excel (la fila 0 es la cabecera). */
+    static final int MAX_FILAS_EXCEL = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+    /** Longitud máxima del nombre de una hoja de Excel. */
+    static final int MAX_NOMBRE_HOJA = 31;
+
+    private final Workbook workbook;
+    private final String tableName;
+    private final String[] cabecera;
+    private final int maxRows;
+    private final long maxBytes;
+    private final Set<String> reservadas;
+    private final List<Sheet> hojas = new ArrayList<>();
+    /** Número que se probará para el nombre de la siguiente hoja. */
+    private int siguiente = 1;
+
+    private Sheet actual;
+    private int filas;
+    private long bytes;
+
+    /**
+     * @param workbook libro donde se crean las hojas.
+     * @param tableName nombre de la tabla.
+     * @param cabecera nombres de columna que se repiten en cada hoja.
+     * @param maxRows filas de datos por hoja (como mucho {@link #MAX_FILAS_EXCEL}).
+     * @param maxBytes tamaño aproximado de los datos por hoja; 0 para no limitarlo.
+     * @param reservadas nombres de hoja de las tablas de la exportación, que las
+     *        continuaciones no pueden usar (sin distinguir mayúsculas, como Excel).
+     */
+    ShardedSheet(Workbook workbook, String tableName, String[] cabecera, int maxRows, long maxBytes,
+            Set<String> reservadas) {
+        this.workbook = workbook;
+        this.tableName = tableName;
+        this.cabecera = cabecera;
+        this.maxRows = Math.max(1, Math.min(maxRows, MAX_FILAS_EXCEL));
+        this.maxBytes = maxBytes;
+        this.reservadas = reservadas;
+        nuevaHoja();
+    }
+
+    /**
+     * Nombre de la hoja número {@code n} (empezando en 1) de una tabla.
+     */
+    static String sheetName(String tableName, int n) {
+        String sufijo = n == 1 ? "" : "_" + n;
+        String base = tableName.length() + sufijo.length() > MAX_NOMBRE_HOJA
+            ? tableName.substring(0, MAX_NOMBRE_HOJA - sufijo.length())
+            : tableName;
+        return base + sufijo;
+    }
+
+    /**
+     * Siguiente nombre libre para una hoja de la tabla: el de la propia tabla para la
+     * primera y, para las demás, el primer <code>tabla_N</code> que no exista en el
+     * libro ni sea el nombre de otra tabla.
+     */
+    private String nombreLibre() {
+        while (true) {
+            String nombre = sheetName(tableName, siguiente);
+            boolean ocupado = workbook.getSheet(nombre) != null
+                || (siguiente > 1 && reservadas.contains(nombre));
+            siguiente++;
+            if (!ocupado) {
+                return nombre;
+            }
+        }
+    }
+
+    /**
+     * Crea la siguiente fila de datos, pasando a una hoja nueva si la actual
+     * ya agotó su presupuesto.
+     */
+    Row nextRow() {
+        if (filas >= maxRows || (maxBytes > 0 && bytes >= maxBytes)) {
+            nuevaHoja();
+        }
+        return actual.createRow(++filas);
+    }
+
+    /**
+     * Suma al presupuesto de la hoja actual el tamaño de la última fila.
+     */
+    void addBytes(long n) {
+        bytes += n;
+    }
+
+    /** Hojas creadas hasta ahora, en orden. */
+    List<Sheet> getSheets() {
+        return hojas;
+    }
+
+    private void nuevaHoja() {
+        actual = workbook.createSheet(nombreLibre());
+        hojas.add(actual);
+        Row headerRow = actual.createRow(0);
+        for (int i = 0; i < cabecera.length; i++) {
+            headerRow.createCell(i).setCellValue(cabecera[i]);
+        }
+        filas = 0;
+        bytes = 0;
+    }
+}
@@ -0,0 +1,273 @@
+package com.iesvdc.dam.acceso.dialecto;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import com.iesvdc.dam.acceso.modelo.FieldModel;
+import com.iesvdc.dam.acceso.modelo.FieldType;
+import com.iesvdc.dam.acceso.modelo.TableModel;
+
+/**
+ * Particularidades de cada gestor de base de datos: cadena de conexión,
+ * forma de entrecomillar identificadores, tipos SQL, vía de carga masiva y
+ * marca de cambio para la exportación incremental.
+ * <p>
+ * El dialecto se elige con la clave <b>driver</b> de la configuración:
+ * <ul>
+ *   <li><b>MySQL</b> (por defecto): {@link MySqlDialect}.</li>
+ *   <li><b>PostgreSQL</b>: {@link PostgreSqlDialect}.</li>
+ *   <li><b>H2</b>: {@link H2Dialect}.</li>
+ * </ul>
+ * Los métodos por defecto siguen el SQL estándar (identificadores entre comillas
+ * dobles y tipos ANSI); cada dialecto cambia solo lo que necesita.
+ */
+public abstract class Dialect {
+    /**
+     * Devuelve el dialecto correspondiente al nombre del driver.
+     *
+     * @param driver nombre del gestor (sin distinguir mayúsculas); {@code null} equivale a MySQL.
+     * @throws IllegalArgumentException si el gestor no está soportado.
+     */
+    public static Dialect forName(String driver) {
+        String nombre = driver == null ? "mysql" : driver.trim().toLowerCase();
+        return switch (nombre) {
+            case "mysql", "mariadb" -> new MySqlDialect();
+            case "postgresql", "postgres" -> new PostgreSqlDialect();
+            case "h2" -> new H2Dialect();
+            default -> throw new IllegalArgumentException("Driver de base de datos no soportado: " + driver);
+        };
+    }
+
+    /**
+     * Devuelve el dialecto indicado por la clave <b>driver</b> de las propiedades.
+     */
+    public static Dialect of(Properties props) {
+        return forName(props.getProperty("driver", "MySQL"));
+    }
+
+    /** Nombre del gestor, para los mensajes. */
+    public abstract String getName();
+
+    /**
+     * Cadena de conexión JDBC a partir de <b>host</b>, <b>port</b> y <b>database</b>.
+     */
+    public abstract String jdbcUrl(Properties props);
+
+    /**
+     * Propiedades que se pasan al driver al conectar. Por defecto, todas.
+     */
+    public Properties connectionProperties(Properties props) {
+        return props;
+    }
+
+    /**
+     * Entrecomilla un nombre de tabla o columna.
+     */
+    public String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Tipo SQL de la columna para un tipo del modelo.
+     */
+    public String sqlType(FieldType type) {
+        return switch (type) {
+            case INTEGER -> "INTEGER";
+            case FLOAT -> "DOUBLE PRECISION";
+            case DECIMAL -> "NUMERIC";
+            case DATE -> "DATE";
+            case DATETIME -> "TIMESTAMP";
+            case BOOLEAN -> "BOOLEAN";
+            default -> "VARCHAR(255)";
+        };
+    }
+
+    /**
+     * Tipo SQL de este gestor para una columna descrita con metadatos JDBC
+     * (la hoja de esquema de un libro exportado desde otro gestor).
+     *
+     * @param jdbcType tipo de {@link java.sql.Types}.
+     * @param size tamaño o precisión de la columna.
+     * @param decimals dígitos decimales.
+     */
+    public String sqlType(int jdbcType, int size, int decimals) {
+        return switch (jdbcType) {
+            case Types.BIT -> size > 1 ? "BIGINT" : sqlType(FieldType.BOOLEAN);
+            case Types.BOOLEAN -> sqlType(FieldType.BOOLEAN);
+            case Types.TINYINT, Types.SMALLINT -> "SMALLINT";
+            case Types.INTEGER -> "INTEGER";
+            case Types.BIGINT -> "BIGINT";
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> sqlType(FieldType.FLOAT);
+            // Sin precisión (NUMERIC de PostgreSQL) o mayor de la que admite MySQL: el decimal más amplio.
+            case Types.DECIMAL, Types.NUMERIC -> size > 0 && size <= 65
+                ? "DECIMAL(" + size + "," + decimals + ")"
+                : sqlType(FieldType.DECIMAL);
+            case Types.DATE -> sqlType(FieldType.DATE);
+            case Types.TIME -> "TIME";
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> sqlType(FieldType.DATETIME);
+            case Types.CHAR, Types.NCHAR -> size > 0 ? "CHAR(" + size + ")" : sqlType(FieldType.VARCHAR);
+            case Types.VARCHAR, Types.NVARCHAR -> size > 0 && size <= 16383
+                ? "VARCHAR(" + size + ")"
+                : longTextType();
+            case Types.LONGVARCHAR, Types.LONGNVARCHAR, Types.CLOB, Types.NCLOB -> longTextType();
+            default -> sqlType(FieldType.VARCHAR);
+        };
+    }
+
+    /**
+     * Tipo para textos sin límite práctico de longitud.
+     */
+    protected String longTextType() {
+        return "TEXT";
+    }
+
+    /**
+     * Sentencia para borrar la tabla si existe.
+     */
+    public String dropTable(String tableName) {
+        return "DROP TABLE IF EXISTS " + quote(tableName);
+    }
+
+    /**
+     * Sentencia <code>CREATE TABLE</code> con los campos del modelo. Si los campos
+     * traen su definición exacta (tipo SQL, nulos, clave primaria) se respeta.
+     */
+    public String createTable(TableModel table) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("CREATE TABLE ").append(quote(table.getName())).append(" (");
+        List<FieldModel> campos = table.getFields();
+        List<FieldModel> clave = new ArrayList<>();
+        for (int i = 0; i < campos.size(); i++) {
+            FieldModel campo = campos.get(i);
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(quote(campo.getName())).append(" ")
+                .append(campo.getSqlType() != null ? campo.getSqlType() : sqlType(campo.getType()));
+            if (!campo.isNullable()) {
+                sql.append(" NOT NULL");
+            }
+            if (campo.getPrimaryKey() > 0) {
+                clave.add(campo);
+            }
+        }
+        if (!clave.isEmpty()) {
+            clave.sort(Comparator.comparingInt(FieldModel::getPrimaryKey));
+            sql.append(", PRIMARY KEY (");
+            for (int i = 0; i < clave.size(); i++) {
+                sql.append(i > 0 ? ", " : "").append(quote(clave.get(i).getName()));
+            }
+            sql.append(")");
+        }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * Sentencia <code>INSERT</code> parametrizada con todas las columnas del modelo.
+     */
+    public String insert(TableModel table) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("INSERT INTO ").append(quote(table.getName())).append(" (").append(columnList(table));
+        sql.append(") VALUES (");
+        for (int i = 0; i < table.getFields().size(); i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * Indica si se puede usar {@link #bulkLoad} sobre esta conexión.
+     */
+    public boolean supportsBulkLoad(Connection conn) throws SQLException {
+        return false;
+    }
+
+    /**
+     * Carga las filas con la vía masiva nativa del gestor, dentro de la transacción
+     * en curso de la conexión. Solo se llama si {@link #supportsBulkLoad} lo permite;
+     * en otro caso las filas se insertan por lotes con {@link #insert(TableModel)}.
+     *
+     * @param conn conexión de destino.
+     * @param table tabla ya creada, con sus campos.
+     * @param rows filas que se cargan, en orden.
+     * @return número de filas cargadas.
+     * @throws SQLException si la carga falla o el gestor avisa de valores perdidos.
+     * @throws SQLFeatureNotSupportedException si el gestor no tiene vía nativa.
+     */
+    public long bulkLoad(Connection conn, TableModel table, Iterator<List<Object>> rows) throws SQLException {
+        throw new SQLFeatureNotSupportedException(getClass().getSimpleName() + " no tiene carga masiva nativa.");
+    }
+
+    /**
+     * Prepara una consulta para que el driver entregue el resultado por partes en
+     * lugar de traerlo entero a memoria al ejecutarla. Por defecto basta con pedir
+     * las filas de {@code rows} en {@code rows}.
+     *
+     * @param conn conexión de la consulta, de uso exclusivo hasta cerrar el resultado.
+     * @param st consulta todavía sin ejecutar.
+     * @param rows filas que se piden al servidor de cada vez.
+     */
+    public void streamResults(Connection conn, Statement st, int rows) throws SQLException {
+        st.setFetchSize(rows);
+    }
+
+    /**
+     * Indica si el gestor tiene la marca de cambio indicada (ver {@link #changeMarker}).
+     *
+     * @param mode <b>update_time</b> o <b>checksum</b>.
+     */
+    public boolean supportsChangeMarker(String mode) {
+        return false;
+    }
+
+    /**
+     * Marca de cambio de una tabla para la exportación incremental: un texto que
+     * cambia cuando cambian sus datos (ver <b>exportChangeMarker</b>).
+     *
+     * @param conn conexión con la base de datos exportada.
+     * @param tableName tabla.
+     * @param mode <b>update_time</b> o <b>checksum</b>.
+     * @return la marca o {@code null} si el gestor no la tiene o no sabe si la tabla cambió.
+     */
+    public String changeMarker(Connection conn, String tableName, String mode) throws SQLException {
+        return null;
+    }
+
+    /**
+     * Lista de columnas entrecomilladas y separadas por comas.
+     */
+    protected String columnList(TableModel table) {
+        StringBuilder columnas = new StringBuilder();
+        for (FieldModel campo : table.getFields()) {
+            if (columnas.length() > 0) {
+                columnas.append(", ");
+            }
+            columnas.append(quote(campo.getName()));
+        }
+        return columnas.toString();
+    }
+
+    /**
+     * Tipos de las columnas del modelo, en orden.
+     */
+    protected static FieldType[] types(TableModel table) {
+        FieldType[] tipos = new FieldType[table.getFields().size()];
+        for (int i = 0; i < tipos.length; i++) {
+            tipos[i] = table.getFields().get(i).getType();
+        }
+        return tipos;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
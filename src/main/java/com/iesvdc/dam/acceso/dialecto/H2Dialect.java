@@ -0,0 +1,47 @@
+package com.iesvdc.dam.acceso.dialecto;
+
+import java.util.Properties;
+
+/**
+ * Dialecto de H2 para análisis en local.
+ * <p>
+ * La clave <b>database</b> es la ruta de la base de datos tal como la espera H2
+ * (por ejemplo <code>./datos/agenda</code>, <code>mem:agenda</code> o
+ * <code>tcp://host/ruta</code>). H2 embebido se ejecuta en el mismo proceso, así
+ * que las inserciones por lotes no pasan por la red: no hay una vía de carga
+ * más rápida que merezca la pena (<code>CSVREAD</code> obligaría a escribir y
+ * volver a leer un fichero intermedio).
+ */
+public class H2Dialect extends Dialect {
+
+    @Override
+    public String getName() {
+        return "H2";
+    }
+
+    @Override
+    public String jdbcUrl(Properties props) {
+        return "jdbc:h2:" + props.getProperty("database");
+    }
+
+    @Override
+    protected String longTextType() {
+        return "CLOB";
+    }
+
+    /**
+     * H2 rechaza las claves de conexión que no conoce, así que solo se le
+     * pasan el usuario y la contraseña.
+     */
+    @Override
+    public Properties connectionProperties(Properties props) {
+        Properties conexion = new Properties();
+        if (props.getProperty("user") != null) {
+            conexion.setProperty("user", props.getProperty("user"));
+        }
+        if (props.getProperty("password") != null) {
+            conexion.setProperty("password", props.getProperty("password"));
+        }
+        return conexion;
+    }
+}
@@ -0,0 +1,153 @@
+package com.iesvdc.dam.acceso.dialecto;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import com.iesvdc.dam.acceso.modelo.FieldType;
+import com.iesvdc.dam.acceso.modelo.TableModel;
+import com.mysql.cj.conf.PropertyKey;
+import com.mysql.cj.jdbc.JdbcConnection;
+import com.mysql.cj.jdbc.JdbcStatement;
+
+/**
+ * Dialecto de MySQL (y MariaDB).
+ * <p>
+ * La carga masiva usa <code>LOAD DATA LOCAL INFILE</code> alimentado desde un
+ * flujo en memoria ({@link JdbcStatement#setLocalInfileInputStream}), sin
+ * fichero intermedio. Requiere <b>allowLoadLocalInfile=true</b> en la
+ * configuración de la conexión y <code>local_infile=ON</code> en el servidor;
+ * si la conexión no lo permite se usan inserciones por lotes.
+ * <p>
+ * Para la exportación incremental tiene las marcas <b>update_time</b>
+ * (<code>information_schema.TABLES</code>) y <b>checksum</b> (<code>CHECKSUM TABLE</code>).
+ */
+public class MySqlDialect extends Dialect {
+
+    @Override
+    public String getName() {
+        return "MySQL";
+    }
+
+    @Override
+    public String jdbcUrl(Properties props) {
+        return "jdbc:mysql://" + props.getProperty("host") + ":" + props.getProperty("port", "3306")
+            + "/" + props.getProperty("database");
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    @Override
+    public String sqlType(FieldType type) {
+        return type.toSqlType();
+    }
+
+    @Override
+    public String sqlType(int jdbcType, int size, int decimals) {
+        // TIMESTAMP en MySQL tiene rango limitado (1970-2038) y cambia con la zona horaria.
+        if (jdbcType == java.sql.Types.TIMESTAMP || jdbcType == java.sql.Types.TIMESTAMP_WITH_TIMEZONE) {
+            return "DATETIME";
+        }
+        return super.sqlType(jdbcType, size, decimals);
+    }
+
+    @Override
+    protected String longTextType() {
+        return "LONGTEXT";
+    }
+
+    @Override
+    public boolean supportsBulkLoad(Connection conn) throws SQLException {
+        return conn.isWrapperFor(JdbcConnection.class)
+            && conn.unwrap(JdbcConnection.class).getPropertySet()
+                .getBooleanProperty(PropertyKey.allowLoadLocalInfile).getValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Con <code>LOCAL</code>, MySQL convierte en avisos los errores de datos y las
+     * claves duplicadas; si hay algún aviso se lanza una excepción para que la
+     * importación se revierta igual que con las inserciones por lotes.
+     */
+    @Override
+    public long bulkLoad(Connection conn, TableModel table, Iterator<List<Object>> rows) throws SQLException {
+        String sql = "LOAD DATA LOCAL INFILE 'filas.tsv' INTO TABLE " + quote(table.getName())
+            + " CHARACTER SET utf8mb4 (" + columnList(table) + ")";
+        try (Statement st = conn.createStatement()) {
+            st.unwrap(JdbcStatement.class).setLocalInfileInputStream(
+                new TextRowStream(types(table), rows, "1", "0"));
+            long cargadas = st.executeLargeUpdate(sql);
+            SQLWarning aviso = st.getWarnings();
+            if (aviso != null) {
+                throw new SQLException("LOAD DATA en " + table.getName() + " terminó con avisos: "
+                    + aviso.getMessage(), aviso);
+            }
+            return cargadas;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Connector/J trae el resultado entero salvo que se pida fila a fila con
+     * <code>Integer.MIN_VALUE</code>, o por bloques con un cursor del servidor si la
+     * conexión tiene <code>useCursorFetch=true</code>.
+     */
+    @Override
+    public void streamResults(Connection conn, Statement st, int rows) throws SQLException {
+        boolean cursor = conn.isWrapperFor(JdbcConnection.class)
+            && conn.unwrap(JdbcConnection.class).getPropertySet()
+                .getBooleanProperty(PropertyKey.useCursorFetch).getValue();
+        st.setFetchSize(cursor ? rows : Integer.MIN_VALUE);
+    }
+
+    @Override
+    public boolean supportsChangeMarker(String mode) {
+        return mode.equals("update_time") || mode.equals("checksum");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Con <b>update_time</b>, <code>CREATE_TIME</code> y <code>UPDATE_TIME</code> de la
+     * tabla; si <code>UPDATE_TIME</code> es nulo (p. ej. InnoDB tras reiniciar el
+     * servidor) no hay marca. Con <b>checksum</b>, el resultado de <code>CHECKSUM TABLE</code>.
+     */
+    @Override
+    public String changeMarker(Connection conn, String tableName, String mode) throws SQLException {
+        if (mode.equals("update_time")) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT CREATE_TIME, UPDATE_TIME FROM information_schema.TABLES"
+                    + " WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?")) {
+                ps.setString(1, conn.getCatalog());
+                ps.setString(2, tableName);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next() || rs.getTimestamp(2) == null) {
+                        return null;
+                    }
+                    return "update_time:" + rs.getTimestamp(1) + "/" + rs.getTimestamp(2);
+                }
+            }
+        }
+        if (mode.equals("checksum")) {
+            try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("CHECKSUM TABLE " + quote(tableName))) {
+                if (!rs.next() || rs.getString("Checksum") == null) {
+                    return null;
+                }
+                return "checksum:" + rs.getString("Checksum");
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,61 @@
+package com.iesvdc.dam.acceso.dialecto;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import org.postgresql.PGConnection;
+
+import com.iesvdc.dam.acceso.modelo.TableModel;
+
+/**
+ * Dialecto de PostgreSQL.
+ * <p>
+ * La carga masiva usa <code>COPY ... FROM STDIN</code> a través del
+ * {@link org.postgresql.copy.CopyManager} del driver, en formato de texto.
+ */
+public class PostgreSqlDialect extends Dialect {
+
+    @Override
+    public String getName() {
+        return "PostgreSQL";
+    }
+
+    @Override
+    public String jdbcUrl(Properties props) {
+        return "jdbc:postgresql://" + props.getProperty("host") + ":" + props.getProperty("port", "5432")
+            + "/" + props.getProperty("database");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * El driver solo lee por bloques con un cursor, que necesita una transacción
+     * abierta: se desactiva el auto-commit de la conexión.
+     */
+    @Override
+    public void streamResults(Connection conn, Statement st, int rows) throws SQLException {
+        conn.setAutoCommit(false);
+        st.setFetchSize(rows);
+    }
+
+    @Override
+    public boolean supportsBulkLoad(Connection conn) throws SQLException {
+        return conn.isWrapperFor(PGConnection.class);
+    }
+
+    @Override
+    public long bulkLoad(Connection conn, TableModel table, Iterator<List<Object>> rows) throws SQLException {
+        String sql = "COPY " + quote(table.getName()) + " (" + columnList(table) + ") FROM STDIN";
+        try {
+            return conn.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn(sql, new TextRowStream(types(table), rows, "t", "f"));
+        } catch (IOException e) {
+            throw new SQLException("Error al enviar las filas de " + table.getName() + " con COPY.", e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.iesvdc.dam.acceso.dialecto;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
+import com.iesvdc.dam.acceso.modelo.FieldType;
+
+/**
+ * Presenta las filas como texto delimitado por tabuladores, el formato que
+ * entienden por defecto <code>LOAD DATA</code> de MySQL y <code>COPY ... FROM STDIN</code>
+ * de PostgreSQL: una fila por línea, <code>\N</code> para los nulos y las barras,
+ * tabuladores y saltos de línea del texto escapados con <code>\</code>.
+ * <p>
+ * Las filas se convierten a medida que el driver lee el flujo, por bloques, sin
+ * copiar la tabla entera a memoria.
+ */
+class TextRowStream extends InputStream {
+    /** Caracteres que se acumulan antes de pasarlos a bytes. */
+    private static final int BLOQUE = 64 * 1024;
+
+    private final FieldType[] tipos;
+    private final Iterator<List<Object>> filas;
+    private final String verdadero;
+    private final String falso;
+    private final StringBuilder texto = new StringBuilder(BLOQUE + 1024);
+
+    private byte[] buffer = new byte[0];
+    private int posicion;
+    private long leidas;
+
+    /**
+     * @param tipos tipos de las columnas, en orden.
+     * @param filas filas que se van a enviar.
+     * @param verdadero texto de un booleano verdadero en el gestor de destino.
+     * @param falso texto de un booleano falso.
+     */
+    TextRowStream(FieldType[] tipos, Iterator<List<Object>> filas, String verdadero, String falso) {
+        this.tipos = tipos;
+        this.filas = filas;
+        this.verdadero = verdadero;
+        this.falso = falso;
+    }
+
+    /** Filas convertidas hasta ahora. */
+    long getRows() {
+        return leidas;
+    }
+
+    @Override
+    public int read() {
+        if (!rellenar()) {
+            return -1;
+        }
+        return buffer[posicion++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] destino, int desde, int longitud) {
+        if (longitud == 0) {
+            return 0;
+        }
+        if (!rellenar()) {
+            return -1;
+        }
+        int n = Math.min(longitud, buffer.length - posicion);
+        System.arraycopy(buffer, posicion, destino, desde, n);
+        posicion += n;
+        return n;
+    }
+
+    /**
+     * Convierte el siguiente bloque de filas si el actual ya se ha leído.
+     *
+     * @return {@code false} si no quedan datos.
+     */
+    private boolean rellenar() {
+        if (posicion < buffer.length) {
+            return true;
+        }
+        texto.setLength(0);
+        while (texto.length() < BLOQUE && filas.hasNext()) {
+            escribirFila(filas.next());
+            leidas++;
+        }
+        buffer = texto.toString().getBytes(StandardCharsets.UTF_8);
+        posicion = 0;
+        return buffer.length > 0;
+    }
+
+    private void escribirFila(List<Object> row) {
+        for (int i = 0; i < tipos.length; i++) {
+            if (i > 0) {
+                texto.append('\t');
+            }
+            Object valor = i < row.size() ? row.get(i) : null;
+            if (valor == null) {
+                texto.append("\\N");
+                continue;
+            }
+            switch (tipos[i]) {
+                case INTEGER -> texto.append(((Number) valor).longValue());
+                case FLOAT -> texto.append(((Number) valor).doubleValue());
+                case DECIMAL -> texto.append(((BigDecimal) valor).toPlainString());
+                case BOOLEAN -> texto.append((Boolean) valor ? verdadero : falso);
+                case DATE -> texto.append(((java.sql.Date) valor).toString());
+                case DATETIME -> texto.append(((java.sql.Timestamp) valor).toString());
+                default -> escapar(valor.toString());
+            }
+        }
+        texto.append('\n');
+    }
+
+    private void escapar(String valor) {
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '\\' -> texto.append("\\\\");
+                case '\t' -> texto.append("\\t");
+                case '\n' -> texto.append("\\n");
+                case '\r' -> texto.append("\\r");
+                default -> texto.append(c);
+            }
+        }
+    }
+}
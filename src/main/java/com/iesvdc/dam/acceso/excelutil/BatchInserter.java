@@ -0,0 +1,159 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Envía las filas de una tabla a la base de datos por lotes, con el tamaño que
+ * marca un {@link BatchSizeController}.
+ * <p>
+ * En el modo estricto (por defecto) cualquier error se propaga y quien llama
+ * revierte la transacción. En el modo tolerante (ver {@link RejectLog}) cada
+ * lote se ejecuta tras un {@link Savepoint}: si falla, se vuelve al savepoint y
+ * el lote se parte en dos mitades que se reintentan por separado, hasta aislar
+ * las filas que fallan por sí solas. Esas filas se rechazan y el resto se
+ * inserta, con un coste de unos pocos lotes extra por cada fila errónea.
+ */
+class BatchInserter {
+
+    /** Asigna los valores de una fila a los parámetros de la sentencia. */
+    interface Binder {
+        void bind(PreparedStatement ps, List<Object> row) throws SQLException;
+    }
+
+    /** Fila pendiente junto a su posición en la tabla. */
+    private record Pendiente(long fila, List<Object> row) { }
+
+    private final Connection conexion;
+    private final PreparedStatement ps;
+    private final String tabla;
+    private final Binder binder;
+    private final BatchSizeController tamano;
+    private final RejectLog rechazos;
+    private final List<Pendiente> pendientes = new ArrayList<>();
+    private long bytesPendientes;
+    private long insertadas;
+
+    BatchInserter(Connection conexion, PreparedStatement ps, String tabla, Binder binder,
+            BatchSizeController tamano, RejectLog rechazos) {
+        this.conexion = conexion;
+        this.ps = ps;
+        this.tabla = tabla;
+        this.binder = binder;
+        this.tamano = tamano;
+        this.rechazos = rechazos;
+    }
+
+    /**
+     * Añade una fila; cuando se completa el lote, o sus filas llegan a
+     * <b>batchMaxBytes</b>, se envía.
+     *
+     * @param fila posición de la fila en la tabla (empezando en 0).
+     */
+    void add(long fila, List<Object> row) throws SQLException {
+        pendientes.add(new Pendiente(fila, row));
+        bytesPendientes += estimar(row);
+        if (pendientes.size() >= tamano.size() || (tamano.maxBytes() > 0 && bytesPendientes >= tamano.maxBytes())) {
+            flush();
+        }
+    }
+
+    /** Envía las filas pendientes. */
+    void flush() throws SQLException {
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        List<Pendiente> lote = new ArrayList<>(pendientes);
+        long bytes = bytesPendientes;
+        boolean porBytes = tamano.maxBytes() > 0 && bytes >= tamano.maxBytes();
+        pendientes.clear();
+        bytesPendientes = 0;
+
+        long inicio = System.nanoTime();
+        if (rechazos.isTolerant()) {
+            if (!ejecutarAislando(lote)) {
+                tamano.failed();
+                return;
+            }
+        } else {
+            for (Pendiente p : lote) {
+                binder.bind(ps, p.row());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            insertadas += lote.size();
+        }
+        tamano.record(lote.size(), bytes, System.nanoTime() - inicio, porBytes);
+    }
+
+    /** Filas insertadas hasta ahora. */
+    long getInserted() {
+        return insertadas;
+    }
+
+    /**
+     * Ejecuta el lote bajo un savepoint; si falla, lo divide por la mitad
+     * y reintenta cada parte.
+     *
+     * @return {@code true} si la base de datos aceptó el lote a la primera.
+     */
+    private boolean ejecutarAislando(List<Pendiente> lote) throws SQLException {
+        // Las filas cuyos valores no se pueden convertir se rechazan sin ir a la base de datos.
+        List<Pendiente> enviadas = new ArrayList<>(lote.size());
+        for (Pendiente p : lote) {
+            try {
+                binder.bind(ps, p.row());
+            } catch (RuntimeException | SQLException e) {
+                ps.clearParameters();
+                rechazos.reject(tabla, p.fila(), p.row(), e);
+                continue;
+            }
+            ps.addBatch();
+            enviadas.add(p);
+        }
+        if (enviadas.isEmpty()) {
+            return true;
+        }
+
+        Savepoint savepoint = conexion.setSavepoint();
+        try {
+            ps.executeBatch();
+            conexion.releaseSavepoint(savepoint);
+            insertadas += enviadas.size();
+            return true;
+        } catch (SQLException e) {
+            ps.clearBatch();
+            conexion.rollback(savepoint);
+            conexion.releaseSavepoint(savepoint);
+            if (enviadas.size() == 1) {
+                Pendiente p = enviadas.get(0);
+                rechazos.reject(tabla, p.fila(), p.row(), e);
+                return false;
+            }
+        }
+
+        int mitad = enviadas.size() / 2;
+        ejecutarAislando(enviadas.subList(0, mitad));
+        ejecutarAislando(enviadas.subList(mitad, enviadas.size()));
+        return false;
+    }
+
+    /**
+     * Tamaño aproximado de los valores de una fila tal como viajan a la base de datos.
+     */
+    private static long estimar(List<Object> row) {
+        long bytes = 0;
+        for (Object valor : row) {
+            if (valor instanceof String texto) {
+                bytes += 4 + texto.length();
+            } else {
+                bytes += valor == null ? 1 : 8;
+            }
+        }
+        return bytes;
+    }
+}
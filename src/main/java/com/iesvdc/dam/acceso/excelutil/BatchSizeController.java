@@ -0,0 +1,160 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decide cuántas filas lleva cada lote de inserción de una tabla.
+ * <p>
+ * Sigue la idea de AIMD (aumento aditivo, reducción multiplicativa): tras cada
+ * lote completo (o enviado por llegar a <b>batchMaxBytes</b>) se mide el
+ * rendimiento (filas por segundo) y,
+ * <ul>
+ *   <li>si el heap supera el {@value #LIMITE_HEAP_PCT}% o el lote tardó más de
+ *       <b>batchTargetMillis</b>, el tamaño se reduce a la mitad;</li>
+ *   <li>si el rendimiento empeora claramente respecto al lote anterior, se reduce un cuarto;</li>
+ *   <li>en otro caso se aumenta en un paso fijo.</li>
+ * </ul>
+ * Además, el tamaño se ajusta a <b>batchMaxBytes</b> según el tamaño medio de
+ * las filas enviadas, para no chocar con <code>max_allowed_packet</code> en
+ * hojas anchas o con textos largos; {@link BatchInserter} envía además el lote
+ * en cuanto sus filas llegan a ese tamaño, aunque el tamaño esté fijado.
+ * <p>
+ * Con <b>adaptiveBatch=false</b>, o si la tabla tiene un tamaño fijado con
+ * <b>batchSize.&lt;tabla&gt;</b>, el tamaño no cambia.
+ */
+class BatchSizeController {
+    private static final int MIN_FILAS = 10;
+    private static final int LIMITE_HEAP_PCT = 85;
+    /** Caída de rendimiento que se tolera como ruido antes de reducir. */
+    private static final double TOLERANCIA = 0.9;
+
+    private static final MemoryMXBean MEMORIA = ManagementFactory.getMemoryMXBean();
+
+    private final String tabla;
+    private final boolean adaptativo;
+    private final int maximo;
+    private final long maxBytes;
+    private final long objetivoNanos;
+    private final int paso;
+
+    private int tamano;
+    private double bytesPorFila;
+    private double rendimientoAnterior;
+    private double mejorRendimiento;
+    private int mejorTamano;
+    private long lotes;
+
+    BatchSizeController(String tabla, int inicial, boolean adaptativo, int maximo, long maxBytes, long objetivoMillis) {
+        this.tabla = tabla;
+        this.adaptativo = adaptativo;
+        this.maximo = Math.max(MIN_FILAS, maximo);
+        this.maxBytes = maxBytes;
+        this.objetivoNanos = TimeUnit.MILLISECONDS.toNanos(objetivoMillis);
+        this.tamano = Math.max(1, inicial);
+        this.mejorTamano = this.tamano;
+        this.paso = Math.max(MIN_FILAS, this.tamano / 4);
+    }
+
+    /**
+     * Crea el controlador de una tabla según las opciones del trabajo.
+     */
+    static BatchSizeController forTable(String tabla, ImportJob job) {
+        String fijado = job.getOption("batchSize." + tabla, null);
+        boolean adaptativo = fijado == null && job.getBooleanOption("adaptiveBatch", true);
+        int inicial = (int) (fijado != null
+            ? job.getLongOption("batchSize." + tabla, 1000)
+            : job.getLongOption("batchSize", 1000));
+        return new BatchSizeController(tabla, inicial, adaptativo,
+            (int) job.getLongOption("batchMaxSize", 50000),
+            job.getLongOption("batchMaxBytes", 4L * 1024 * 1024),
+            job.getLongOption("batchTargetMillis", 2000));
+    }
+
+    /** Filas que debe llevar el siguiente lote. */
+    int size() {
+        return tamano;
+    }
+
+    /** Bytes a partir de los cuales se envía el lote aunque no esté completo; 0 sin límite. */
+    long maxBytes() {
+        return maxBytes;
+    }
+
+    boolean isAdaptive() {
+        return adaptativo;
+    }
+
+    /**
+     * Anota un lote ejecutado y recalcula el tamaño del siguiente.
+     *
+     * @param filas filas del lote.
+     * @param bytes tamaño aproximado de los valores enviados.
+     * @param nanos lo que tardó <code>executeBatch</code>.
+     * @param llenoPorBytes el lote se envió al llegar a <b>batchMaxBytes</b>, no por número de filas.
+     */
+    void record(int filas, long bytes, long nanos, boolean llenoPorBytes) {
+        if (filas == 0) {
+            return;
+        }
+        lotes++;
+        double medio = (double) bytes / filas;
+        bytesPorFila = bytesPorFila == 0 ? medio : 0.8 * bytesPorFila + 0.2 * medio;
+        // Solo los lotes completos son comparables (el último suele ir a medias);
+        // uno que se envió por bytes también cuenta como completo.
+        if (!adaptativo || (filas < tamano && !llenoPorBytes)) {
+            return;
+        }
+
+        double rendimiento = filas * 1e9 / Math.max(1, nanos);
+        if (rendimiento > mejorRendimiento) {
+            mejorRendimiento = rendimiento;
+            mejorTamano = filas;
+        }
+
+        if (usoHeapPct() > LIMITE_HEAP_PCT || nanos > objetivoNanos) {
+            tamano = tamano / 2;
+        } else if (rendimiento < rendimientoAnterior * TOLERANCIA) {
+            tamano = tamano - tamano / 4;
+        } else {
+            tamano = tamano + paso;
+        }
+        rendimientoAnterior = rendimiento;
+
+        int porBytes = bytesPorFila > 0 && maxBytes > 0
+            ? (int) Math.min(Integer.MAX_VALUE, maxBytes / bytesPorFila)
+            : maximo;
+        tamano = Math.max(MIN_FILAS, Math.min(tamano, Math.min(maximo, porBytes)));
+    }
+
+    /**
+     * Un lote ha fallado: el siguiente será la mitad de grande.
+     */
+    void failed() {
+        if (adaptativo) {
+            tamano = Math.max(MIN_FILAS, tamano / 2);
+        }
+    }
+
+    /**
+     * Resumen para el registro, con el valor que se puede fijar en la configuración.
+     */
+    String summary() {
+        if (mejorRendimiento == 0) {
+            // Ningún lote completo: la tabla cabe en un solo lote.
+            return "Lotes de " + tabla + ": " + lotes + " lote(s) de como mucho " + tamano + " filas.";
+        }
+        return "Lotes de " + tabla + ": " + lotes + " lotes, tamaño final " + tamano
+            + ", mejor rendimiento con " + mejorTamano + " filas/lote ("
+            + Math.round(mejorRendimiento) + " filas/s, " + Math.round(bytesPorFila) + " bytes/fila)."
+            + " Para fijarlo: batchSize." + tabla + "=" + mejorTamano;
+    }
+
+    private static long usoHeapPct() {
+        MemoryUsage heap = MEMORIA.getHeapMemoryUsage();
+        long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+        return heap.getUsed() * 100 / Math.max(1, max);
+    }
+}
@@ -0,0 +1,36 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import org.apache.poi.ss.usermodel.CellValue;
+
+/**
+ * Contenido de una celda tal como lo usa {@link ExcelReader}, sea cual sea la forma
+ * de leer el libro (modelo completo de POI o {@link StreamingWorkbook}).
+ *
+ * @param value valor de la celda o resultado de su fórmula; {@code null} si está vacía,
+ *        tiene un error o es una fórmula sin resultado.
+ * @param formatIndex índice del formato numérico de la celda.
+ * @param formatString formato numérico; {@code null} si no tiene. Con él se sabe si
+ *        un número es una fecha.
+ */
+record CellData(CellValue value, short formatIndex, String formatString) {
+
+    /**
+     * Texto de una celda, para cabeceras y para la hoja de esquema: los números
+     * enteros sin decimales y las celdas vacías como cadena vacía.
+     */
+    static String text(CellData celda) {
+        if (celda == null || celda.value() == null) {
+            return "";
+        }
+        CellValue valor = celda.value();
+        return switch (valor.getCellType()) {
+            case STRING -> valor.getStringValue();
+            case NUMERIC -> valor.getNumberValue() == Math.rint(valor.getNumberValue())
+                && Math.abs(valor.getNumberValue()) < 1e15
+                    ? Long.toString((long) valor.getNumberValue())
+                    : Double.toString(valor.getNumberValue());
+            case BOOLEAN -> valor.getBooleanValue() ? "TRUE" : "FALSE";
+            default -> "";
+        };
+    }
+}
@@ -1,16 +1,34 @@
 package com.iesvdc.dam.acceso.excelutil;
 
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.Date1904Support;
 import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
@@ -18,8 +36,12 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import com.iesvdc.dam.acceso.conexion.Conexion;
+import com.iesvdc.dam.acceso.conexion.Config;
+import com.iesvdc.dam.acceso.dialecto.Dialect;
 import com.iesvdc.dam.acceso.modelo.FieldModel;
 import com.iesvdc.dam.acceso.modelo.FieldType;
+import com.iesvdc.dam.acceso.modelo.MemoryBudget;
+import com.iesvdc.dam.acceso.modelo.RowBuffer;
 import com.iesvdc.dam.acceso.modelo.TableModel;
 import com.iesvdc.dam.acceso.modelo.WorkbookModel;
 
@@ -27,18 +49,24 @@ import com.iesvdc.dam.acceso.modelo.WorkbookModel;
  * Clase auxiliar que interpreta un libro Excel y permite:
  * <ul>
  *   <li>Construir un modelo intermedio ({@link WorkbookModel}) con tablas, campos y filas.</li>
- *   <li>Generar y ejecutar el DDL necesario para recrear esas tablas en MySQL.</li>
+ *   <li>Generar y ejecutar el DDL necesario para recrear esas tablas en MySQL, PostgreSQL o H2
+ *       (ver {@link Dialect}).</li>
  *   <li>Insertar los datos leídos en las tablas recién creadas.</li>
  * </ul>
  * Se apoya en Apache POI para leer el Excel y en JDBC para hablar con la base de datos.
+ * <p>
+ * Los métodos {@link #parse(ImportJob)} y {@link #save(WorkbookModel, Connection, ImportJob)}
+ * no guardan estado en la instancia, por lo que un mismo lector puede atender varias
+ * importaciones a la vez (ver {@link ImportEngine}). Solo {@link #loadWorkbook(String)} y
+ * {@link #saveToDatabase()} recuerdan el último modelo cargado.
  */
 public class ExcelReader {
-    /** Libro de POI con el contenido Excel original. */
-    private Workbook wb;
-    /** Modelo intermedio que describe todas las tablas, campos y filas. */
-    private WorkbookModel wbm;
-    /** Conexión JDBC usada para crear tablas e insertar filas. */
-    private Connection conexion;
+    /** Modelo cargado con {@link #loadWorkbook(String)} (API clásica de un solo uso). */
+    private volatile WorkbookModel wbm;
+    /** Fichero del modelo cargado, para los informes de {@link #saveToDatabase()}. */
+    private volatile String ficheroCargado;
+    /** Caché compartida: formato de celda -> si representa una fecha. */
+    private final Map<String, Boolean> formatosFecha = new ConcurrentHashMap<>();
     /** Margen de error para decidir si un número es entero o decimal. */
     private final double EPSILON = 1e-10;
 
@@ -48,40 +76,135 @@ public class ExcelReader {
     /**
      * Devuelve un String indicando el tipo de dato de la celda.
      * Puede ser: Entero, Decimal, Texto, Booleano, Fecha, Vacía, Fórmula, Error
+     * <p>
+     * Las fórmulas toman el tipo de su último resultado guardado en el fichero.
      */
     public FieldType getTipoDato(Cell cell) {
-        if (cell == null) {
+        return tipoDato(celda(cell, Map.of()));
+    }
+
+    /**
+     * Tipo de una celda leída del libro.
+     */
+    private FieldType tipoDato(CellData celda) {
+        if (celda == null) {
             return FieldType.UNKNOWN;
         }
+        CellValue valor = celda.value();
+        return switch (valor.getCellType()) {
+            case STRING -> FieldType.VARCHAR;
+            case NUMERIC -> tipoNumerico(celda, valor.getNumberValue());
+            case BOOLEAN -> FieldType.BOOLEAN;
+            default -> FieldType.UNKNOWN;
+        };
+    }
 
-        CellType tipoCelda = cell.getCellType();
+    /**
+     * Fecha, entero o decimal según el formato de la celda y su valor.
+     */
+    private FieldType tipoNumerico(CellData celda, double valor) {
+        if (esFecha(celda, valor)) {
+            return FieldType.DATE;
+        } else if (Math.abs(valor - Math.floor(valor)) < EPSILON) {
+            return FieldType.INTEGER;
+        } else {
+            return FieldType.FLOAT;
+        }
+    }
 
-        switch (tipoCelda) {
-            case STRING:
-                return FieldType.VARCHAR;
+    /**
+     * Contenido de una celda del modelo completo de POI. Las fórmulas usan el valor
+     * calculado con <b>evaluateFormulas</b>, si lo hay, o su último resultado guardado.
+     *
+     * @param evaluadas fórmulas calculadas de la hoja (ver {@link FormulaPrecalculator}).
+     * @return la celda o {@code null} si no tiene valor.
+     */
+    private static CellData celda(Cell cell, Map<Long, CellValue> evaluadas) {
+        if (cell == null) {
+            return null;
+        }
+        CellValue valor = switch (cell.getCellType()) {
+            case STRING -> new CellValue(cell.getStringCellValue());
+            case NUMERIC -> new CellValue(cell.getNumericCellValue());
+            case BOOLEAN -> CellValue.valueOf(cell.getBooleanCellValue());
+            case FORMULA -> valorFormula(cell, evaluadas);
+            default -> null;
+        };
+        if (valor == null) {
+            return null;
+        }
+        // El formato solo hace falta para saber si un número es una fecha.
+        CellStyle estilo = valor.getCellType() == CellType.NUMERIC ? cell.getCellStyle() : null;
+        return estilo == null
+            ? new CellData(valor, (short) 0, null)
+            : new CellData(valor, estilo.getDataFormat(), estilo.getDataFormatString());
+    }
 
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return FieldType.DATE;
-                } else {
-                    double valor = cell.getNumericCellValue();
-                    if (Math.abs(valor - Math.floor(valor)) < EPSILON) {
-                        return FieldType.INTEGER;
-                    } else {
-                        return FieldType.FLOAT;
-                    }
-                }
+    /**
+     * Celdas de una fila del modelo completo de POI, por columna.
+     */
+    private static List<CellData> celdas(Row fila, Map<Long, CellValue> evaluadas) {
+        List<CellData> celdas = new ArrayList<>();
+        for (int j = 0; j < fila.getLastCellNum(); j++) {
+            celdas.add(celda(fila.getCell(j), evaluadas));
+        }
+        return celdas;
+    }
 
-            case BOOLEAN:
-                return FieldType.BOOLEAN;
+    /**
+     * Resultado de una celda de fórmula: el calculado con <b>evaluateFormulas</b>,
+     * si lo hay, o el último que Excel guardó en el fichero (sin evaluar nada).
+     *
+     * @return el resultado o {@code null} si la fórmula no tiene ninguno.
+     */
+    private static CellValue valorFormula(Cell celda, Map<Long, CellValue> evaluadas) {
+        CellValue evaluada = evaluadas.isEmpty() ? null : evaluadas.get(FormulaPrecalculator.clave(celda));
+        if (evaluada != null) {
+            return evaluada;
+        }
+        if (FormulaPrecalculator.sinResultado(celda)) {
+            return null;
+        }
+        return switch (celda.getCachedFormulaResultType()) {
+            case NUMERIC -> new CellValue(celda.getNumericCellValue());
+            case STRING -> new CellValue(celda.getStringCellValue());
+            case BOOLEAN -> CellValue.valueOf(celda.getBooleanCellValue());
+            default -> null;
+        };
+    }
 
-            default:
-                return FieldType.UNKNOWN;
+    /**
+     * Indica si una celda numérica tiene formato de fecha. El resultado se cachea
+     * por cadena de formato, ya que analizarla es lo más costoso de la inferencia.
+     */
+    private boolean esFecha(CellData celda, double valor) {
+        if (!DateUtil.isValidExcelDate(valor) || celda.formatString() == null) {
+            return false;
         }
+        short indice = celda.formatIndex();
+        String formato = celda.formatString();
+        return formatosFecha.computeIfAbsent(indice + ":" + formato,
+            k -> DateUtil.isADateFormat(indice, formato));
     }
 
     /**
      * Carga un fichero Excel y convierte cada hoja en una {@link TableModel}.
+     * Equivale a {@link #parse(ImportJob)} con la configuración de <b>config.properties</b>,
+     * pero guarda el modelo para un posterior {@link #saveToDatabase()}.
+     *
+     * @param filename ruta al fichero Excel (.xlsx).
+     */
+    public void loadWorkbook(String filename) {
+        try {
+            wbm = parse(new ImportJob(filename, Config.getProperties("config.properties")));
+            ficheroCargado = filename;
+        } catch (Exception e) {
+            System.out.println("Imposible cargar el archivo Excel: " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Lee el fichero Excel de un trabajo y convierte cada hoja en una {@link TableModel}.
      *
      * <p>Convenciones:</p>
      * <ul>
@@ -89,114 +212,330 @@ public class ExcelReader {
      *   <li>Fila 1: ejemplos para detectar el tipo de dato.</li>
      *   <li>Filar 2 en adelante: registros a importar.</li>
      * </ul>
+     * Si el libro tiene la hoja oculta {@link SchemaSheet#NAME} (los exportados por
+     * {@link com.iesvdc.dam.acceso.databaseutil.DatabaseReader}), las hojas que describe
+     * no tienen fila de ejemplo: la tabla se crea con los tipos, nulos y clave primaria
+     * del esquema (los tipos exactos si el gestor de <b>driver</b> es el de origen) y
+     * los datos empiezan en la fila 1. Una tabla exportada en varias hojas aparece en
+     * el esquema con todas ellas, y sus filas se unen en una sola tabla; sin esquema,
+     * cada hoja es una tabla aunque su nombre parezca una continuación (<code>tabla_2</code>).
+     * Si la cabecera de una de esas hojas ya no coincide con el esquema, se ignora el
+     * esquema para esa hoja.
+     * <p>
+     * Si no hay que evaluar fórmulas (<b>evaluateFormulas</b>=none, lo normal), el libro
+     * se lee en streaming ({@link StreamingWorkbook}) sin cargarlo entero en memoria;
+     * para evaluarlas hace falta el modelo completo de POI.
+     * <p>
+     * Las filas de todas las tablas ocupan entre todas como mucho <b>rowBufferBytes</b>
+     * bytes del heap (por defecto {@link MemoryBudget#defaultLimit()}); el resto pasa a
+     * ficheros temporales en <b>rowBufferDir</b> (ver {@link RowBuffer}). El modelo
+     * devuelto debe cerrarse para borrarlos.
      *
-     * @param filename ruta al fichero Excel (.xlsx).
+     * @param job trabajo de importación con el fichero y sus opciones.
+     * @return el modelo con todas las tablas leídas.
+     * @throws IOException si no se puede leer el fichero.
      */
-    public void loadWorkbook(String filename) {
-        try (FileInputStream fis = new FileInputStream(filename)) {
-            // Abrimos el libro y creamos el modelo raíz.
-            wb = new XSSFWorkbook(fis);
-            wbm = new WorkbookModel();
+    public WorkbookModel parse(ImportJob job) throws IOException {
+        return parse(job, new MemoryBudget(job.getLongOption("rowBufferBytes", MemoryBudget.defaultLimit())));
+    }
+
+    /**
+     * Lee un libro como {@link #parse(ImportJob)}, pero con un presupuesto de memoria
+     * que puede compartir con otros libros que se leen a la vez (ver {@link ImportEngine}).
+     *
+     * @param presupuesto presupuesto del que reservan las filas de todas las tablas.
+     */
+    public WorkbookModel parse(ImportJob job, MemoryBudget presupuesto) throws IOException {
+        String dirTemporal = job.getOption("rowBufferDir", null);
+        Path tempDir = dirTemporal == null || dirTemporal.isBlank() ? null : Path.of(dirTemporal.trim());
+        String modoFormulas = job.getOption("evaluateFormulas", "none");
+
+        // Creamos el modelo raíz; si la lectura falla se cierra para borrar sus temporales.
+        WorkbookModel modelo = new WorkbookModel();
+        LecturaLibro lectura = new LecturaLibro(modelo, presupuesto, tempDir,
+            Dialect.forName(job.getOption("driver", "MySQL")));
+        try {
+            if (modoFormulas.trim().equalsIgnoreCase("none")) {
+                leerEnStreaming(job.getInputFile(), lectura);
+            } else {
+                leerLibroCompleto(job.getInputFile(), lectura, modoFormulas);
+            }
+            return modelo;
+        } catch (IOException | RuntimeException e) {
+            modelo.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Lee el libro hoja a hoja con {@link StreamingWorkbook}.
+     */
+    private void leerEnStreaming(String fichero, LecturaLibro lectura) throws IOException {
+        try (StreamingWorkbook libro = new StreamingWorkbook(fichero)) {
+            lectura.fecha1904 = libro.isDate1904();
+
+            // La hoja de esquema va al final del libro, pero hay que leerla primero.
+            // Si no es un esquema de exportación, se importa como una hoja más.
+            boolean conEsquema = false;
+            if (libro.getSheetNames().contains(SchemaSheet.NAME)) {
+                List<List<String>> filas = new ArrayList<>();
+                libro.read(SchemaSheet.NAME, (indice, celdas) -> {
+                    while (filas.size() < indice) {
+                        filas.add(List.of());
+                    }
+                    filas.add(celdas.stream().map(CellData::text).toList());
+                    return true;
+                });
+                Map<String, List<SchemaSheet.Column>> tablasEsquema = SchemaSheet.read(filas);
+                lectura.esquema(tablasEsquema);
+                conEsquema = tablasEsquema != null;
+            }
+
+            for (String nombreHoja : libro.getSheetNames()) {
+                if (conEsquema && nombreHoja.equals(SchemaSheet.NAME)) {
+                    continue;
+                }
+                LectorHoja lector = new LectorHoja(lectura, nombreHoja);
+                libro.read(nombreHoja, lector::fila);
+                lector.terminar();
+            }
+        }
+    }
+
+    /**
+     * Lee el libro con el modelo completo de POI, que permite evaluar sus fórmulas.
+     *
+     * @param modoFormulas valor de <b>evaluateFormulas</b> (ver {@link FormulaPrecalculator}).
+     */
+    private void leerLibroCompleto(String fichero, LecturaLibro lectura, String modoFormulas) throws IOException {
+        try (FileInputStream fis = new FileInputStream(fichero);
+            Workbook wb = new XSSFWorkbook(fis)) {
+            lectura.fecha1904 = wb instanceof Date1904Support libro && libro.isDate1904();
+
+            // Fórmulas calculadas de antemano, solo si se pide con evaluateFormulas.
+            Map<Sheet, Map<Long, CellValue>> formulas = FormulaPrecalculator.evaluate(wb, modoFormulas);
+
+            Map<String, List<SchemaSheet.Column>> tablasEsquema = SchemaSheet.read(wb);
+            lectura.esquema(tablasEsquema);
 
             int nHojas = wb.getNumberOfSheets();
             for (int i = 0; i < nHojas; i++) {
                 Sheet hojaActual = wb.getSheetAt(i);
-                // El nombre de la hoja pasa a ser el nombre de la tabla.
-                TableModel tabla = new TableModel(hojaActual.getSheetName());
+                if (tablasEsquema != null && hojaActual.getSheetName().equals(SchemaSheet.NAME)) {
+                    continue;
+                }
+                Map<Long, CellValue> evaluadas = formulas.getOrDefault(hojaActual, Map.of());
+
+                LectorHoja lector = new LectorHoja(lectura, hojaActual.getSheetName());
+                Row fila;
+                for (int j = 0; (fila = hojaActual.getRow(j)) != null; j++) {
+                    if (!lector.fila(j, celdas(fila, evaluadas))) {
+                        break;
+                    }
+                }
+                lector.terminar();
+            }
+        }
+    }
+
+    /**
+     * Estado de la lectura de un libro que comparten todas sus hojas.
+     */
+    private static final class LecturaLibro {
+        private final WorkbookModel modelo;
+        private final MemoryBudget presupuesto;
+        private final Path tempDir;
+        private final Dialect destino;
+        /** Hoja de esquema de una exportación: hoja -> columnas de su tabla. */
+        private final Map<String, List<SchemaSheet.Column>> esquema = new HashMap<>();
+        /** Tablas del esquema ya creadas, por nombre: sus hojas se unen en una. */
+        private final Map<String, TableModel> creadas = new HashMap<>();
+        private boolean fecha1904;
+
+        LecturaLibro(WorkbookModel modelo, MemoryBudget presupuesto, Path tempDir, Dialect destino) {
+            this.modelo = modelo;
+            this.presupuesto = presupuesto;
+            this.tempDir = tempDir;
+            this.destino = destino;
+        }
+
+        /**
+         * @param tablas columnas por tabla de la hoja de esquema, o {@code null} si no la hay.
+         */
+        void esquema(Map<String, List<SchemaSheet.Column>> tablas) {
+            if (tablas == null) {
+                return;
+            }
+            for (List<SchemaSheet.Column> columnas : tablas.values()) {
+                for (String nombreHoja : columnas.get(0).sheets()) {
+                    esquema.put(nombreHoja, columnas);
+                }
+            }
+        }
+
+        /** Crea una tabla vacía en el modelo, con el presupuesto de memoria del libro. */
+        TableModel nuevaTabla(String nombre) {
+            TableModel tabla = new TableModel(nombre, new RowBuffer(presupuesto, tempDir));
+            modelo.addTable(tabla);
+            return tabla;
+        }
+    }
+
+    /**
+     * Convierte las filas de una hoja, recibidas en orden, en la tabla del modelo.
+     * La lectura termina en la primera fila que falta.
+     */
+    private final class LectorHoja {
+        private final LecturaLibro lectura;
+        private final String nombreHoja;
+        private int siguiente;
+        private List<String> cabecera;
+        private TableModel tabla;
+
+        LectorHoja(LecturaLibro lectura, String nombreHoja) {
+            this.lectura = lectura;
+            this.nombreHoja = nombreHoja;
+        }
 
+        /**
+         * @return {@code false} si la hoja ya no tiene más filas que leer.
+         */
+        boolean fila(int indice, List<CellData> celdas) {
+            if (indice != siguiente) {
+                return false;
+            }
+            siguiente++;
+            if (indice == 0) {
                 // Fila 0 -> nombres de los campos.
-                Row primeraFila = hojaActual.getRow(0);
+                cabecera = celdas.stream().map(CellData::text).toList();
+                tablaDelEsquema();
+            } else if (tabla == null) {
                 // Fila 1 -> valores de ejemplo para inferir el tipo.
-                Row segundaFila = hojaActual.getRow(1);
-
-                int nCols = primeraFila.getLastCellNum();
-                List<FieldModel> campos = new ArrayList<>();
+                crearTabla(celdas);
+            } else {
+                // A partir de aquí están los datos reales.
+                agregar(celdas);
+            }
+            return true;
+        }
 
-                // Recorremos las columnas para crear los FieldModel (nombre + tipo).
-                for (int j = 0; j < nCols; j++) {
-                    FieldModel campo = new FieldModel(
-                        primeraFila.getCell(j).getStringCellValue(),
-                        getTipoDato(segundaFila.getCell(j))
-                    );
+        /**
+         * Termina la hoja: una cabecera sin fila de ejemplo da una tabla vacía.
+         */
+        void terminar() {
+            if (cabecera != null && tabla == null) {
+                crearTabla(List.of());
+            }
+        }
 
-                    tabla.addField(campo);
-                    campos.add(campo);
+        /**
+         * Tabla descrita en el esquema: no hay fila de ejemplo ni que deducir tipos.
+         */
+        private void tablaDelEsquema() {
+            List<SchemaSheet.Column> columnas = lectura.esquema.get(nombreHoja);
+            if (columnas != null && !SchemaSheet.sameHeader(cabecera, columnas)) {
+                System.err.println("La cabecera de la hoja " + nombreHoja
+                    + " no coincide con el esquema exportado; se deducen sus tipos.");
+                columnas = null;
+            }
+            if (columnas != null) {
+                String nombreTabla = columnas.get(0).table();
+                tabla = lectura.creadas.get(nombreTabla);
+                if (tabla == null) {
+                    tabla = lectura.nuevaTabla(nombreTabla);
+                    for (SchemaSheet.Column columna : columnas) {
+                        tabla.addField(columna.toField(lectura.destino));
+                    }
+                    lectura.creadas.put(nombreTabla, tabla);
                 }
+            }
+        }
 
-                // A partir de la fila 2 están los datos reales.
-                int filaActual = 2;
-                Row filaDatos;
-                while ((filaDatos = hojaActual.getRow(filaActual)) != null) {
-                    List<Object> valores = new ArrayList<>();
-                    boolean filaVacia = true;
-
-                    for (int j = 0; j < nCols; j++) {
-                        FieldModel campo = campos.get(j);
-                        Cell celda = filaDatos.getCell(j);
-                        Object valor = readCellValue(celda, campo.getType());
-                        valores.add(valor);
-
-                        if (valor != null) {
-                            filaVacia = false;
-                        }
-                    }
+        private void crearTabla(List<CellData> ejemplo) {
+            // El nombre de la hoja pasa a ser el nombre de la tabla.
+            tabla = lectura.nuevaTabla(nombreHoja);
+            for (int j = 0; j < cabecera.size(); j++) {
+                tabla.addField(new FieldModel(cabecera.get(j), tipoDato(j < ejemplo.size() ? ejemplo.get(j) : null)));
+            }
+        }
 
-                    // Solo añadimos filas que tengan al menos un valor.
-                    if (!filaVacia) {
-                        tabla.addRow(valores);
-                    }
+        private void agregar(List<CellData> celdas) {
+            List<FieldModel> campos = tabla.getFields();
+            int nCols = campos.size();
+            List<Object> valores = new ArrayList<>(nCols);
+            boolean filaVacia = true;
 
-                    filaActual++;
-                }
+            for (int j = 0; j < nCols; j++) {
+                FieldModel campo = campos.get(j);
+                Object valor = leerValor(j < celdas.size() ? celdas.get(j) : null, campo.getType(), lectura.fecha1904);
+                valores.add(valor);
 
-                wbm.addTable(tabla);
+                if (valor != null) {
+                    filaVacia = false;
+                }
             }
 
-        } catch (Exception e) {
-            System.out.println("Imposible cargar el archivo Excel: " + e.getLocalizedMessage());
+            // Solo añadimos filas que tengan al menos un valor.
+            if (!filaVacia) {
+                // Un texto vacío se lee como nulo; en columnas NOT NULL era una cadena vacía.
+                for (int j = 0; j < nCols; j++) {
+                    FieldModel campo = campos.get(j);
+                    if (valores.get(j) == null && !campo.isNullable() && campo.getType() == FieldType.VARCHAR) {
+                        valores.set(j, "");
+                    }
+                }
+                tabla.addRow(valores);
+            }
         }
     }
 
     /**
      * Genera y ejecuta el DDL necesario para crear las tablas definidas
-     * en el {@link WorkbookModel} cargado previamente.
+     * en el {@link WorkbookModel} cargado previamente, con la conexión y el gestor
+     * de <b>config.properties</b>.
      *
      * @return true si todas las tablas se crearon correctamente.
      */
     public boolean executeDDL() {
-        if (conexion == null) {
-            conexion = Conexion.getConnection();
+        if (wbm == null) {
+            throw new IllegalStateException("Debe cargar primero un libro Excel antes de crear las tablas.");
         }
-        if (conexion == null) {
-            throw new RuntimeException("No se pudo obtener conexión para crear las tablas.");
+        try (Connection conn = Conexion.getConnection()) {
+            if (conn == null) {
+                throw new RuntimeException("No se pudo obtener conexión para crear las tablas.");
+            }
+            return executeDDL(wbm, conn, Dialect.of(Config.getProperties("config.properties")));
+        } catch (SQLException e) {
+            throw new RuntimeException("Error al cerrar la conexión tras crear las tablas.", e);
         }
+    }
 
+    /**
+     * Genera y ejecuta el DDL necesario para crear las tablas del modelo indicado.
+     *
+     * @param modelo modelo con las tablas a crear.
+     * @param conexion conexión sobre la que se ejecuta el DDL.
+     * @param dialecto gestor de destino (entrecomillado y tipos SQL).
+     * @return true si todas las tablas se crearon correctamente.
+     */
+    public boolean executeDDL(WorkbookModel modelo, Connection conexion, Dialect dialecto) {
+        return crearTablas(modelo, conexion, dialecto, Set.of());
+    }
+
+    /**
+     * @param anexar tablas que ya existen y no se recrean.
+     */
+    private boolean crearTablas(WorkbookModel modelo, Connection conexion, Dialect dialecto, Set<String> anexar) {
         boolean resultado = true;
 
-        for (TableModel tableModel : wbm.getTables()) {
-            // Generamos el SQL CREATE TABLE usando los nombres y tipos del modelo.
-            StringBuilder sqlSB = new StringBuilder();
-            sqlSB.append("CREATE TABLE ");
-            sqlSB.append(tableModel.getName());
-            sqlSB.append("(");
-
-            int nCampos = tableModel.getFields().size();
-            for (FieldModel fieldModel : tableModel.getFields()) {
-                nCampos--;
-                sqlSB.append("`");
-                sqlSB.append(fieldModel.getName());
-                sqlSB.append("` ");
-                sqlSB.append(fieldModel.getType().toSqlType());
-                if (nCampos > 0) {
-                    sqlSB.append(", ");
-                }
+        for (TableModel tableModel : modelo.getTables()) {
+            if (anexar.contains(tableModel.getName())) {
+                continue;
             }
-            sqlSB.append(");");
-
             try (Statement stmt = conexion.createStatement()) {
                 // Eliminamos la tabla si ya existía y creamos la nueva estructura.
-                stmt.execute("DROP TABLE IF EXISTS `" + tableModel.getName() + "`");
-                stmt.executeUpdate(sqlSB.toString());
+                stmt.execute(dialecto.dropTable(tableModel.getName()));
+                stmt.executeUpdate(dialecto.createTable(tableModel));
             } catch (SQLException e) {
                 resultado = false;
                 throw new RuntimeException("Error al crear la tabla " + tableModel.getName(), e);
@@ -206,16 +545,11 @@ public class ExcelReader {
         return resultado;
     }
 
-        /**
-     * Importa el libro Excel cargado a la base de datos.
-     * <p>Pasos:</p>
-     * <ol>
-     *   <li>Validar que existe un {@link WorkbookModel} cargado.</li>
-     *   <li>Abrir una conexión JDBC y desactivar el auto-commit para agrupar todas las operaciones.</li>
-     *   <li>Recrear las tablas detectadas en el Excel con {@link #executeDDL()}.</li>
-     *   <li>Insertar todas las filas de cada tabla con {@link #insertarTabla(TableModel)}.</li>
-     *   <li>Confirmar los cambios; si algo falla, revertir con <code>rollback()</code>.</li>
-     * </ol>
+    /**
+     * Importa el libro Excel cargado con {@link #loadWorkbook(String)} a la base de datos,
+     * usando una conexión nueva que se cierra al terminar.
+     *
+     * @see #save(WorkbookModel, Connection, ImportJob)
      */
     public void saveToDatabase() {
         if (wbm == null) {
@@ -227,81 +561,207 @@ public class ExcelReader {
             if (conn == null) {
                 throw new RuntimeException("No se pudo establecer la conexión con la base de datos.");
             }
+            save(wbm, conn, new ImportJob(ficheroCargado, Config.getProperties("config.properties")));
+        } catch (SQLException e) {
+            throw new RuntimeException("Error al volcar los datos del Excel a la base de datos.", e);
+        }
+    }
+
+    /**
+     * Importa un modelo a la base de datos usando la conexión indicada.
+     * <p>Pasos:</p>
+     * <ol>
+     *   <li>Desactivar el auto-commit para agrupar todas las operaciones.</li>
+     *   <li>Recrear las tablas del modelo con {@link #executeDDL(WorkbookModel, Connection, Dialect)},
+     *       usando el gestor de la opción <b>driver</b>.</li>
+     *   <li>Insertar las filas de cada tabla con
+     *       {@link #insertarTabla(Connection, Dialect, TableModel, ImportJob, Writer, RejectLog)},
+     *       descartando las de clave repetida si la hoja tiene <b>dedupKeys</b> y, en el modo
+     *       tolerante (<b>maxErrors</b>), apartando las que la base de datos rechaza.</li>
+     *   <li>Confirmar los cambios; si algo falla, revertir con <code>rollback()</code>.</li>
+     * </ol>
+     * La conexión no se cierra: queda en manos de quien la proporcionó.
+     *
+     * @param modelo modelo obtenido con {@link #parse(ImportJob)}.
+     * @param conn conexión de uso exclusivo durante la llamada.
+     * @param job trabajo de importación con sus opciones.
+     * @return resumen con las filas insertadas y descartadas (el tiempo es el del volcado).
+     * @throws SQLException si falla la creación de tablas o la inserción.
+     */
+    public ImportResult save(WorkbookModel modelo, Connection conn, ImportJob job) throws SQLException {
+        return save(modelo, conn, job, Set.of());
+    }
 
-            // Guardamos la referencia para que otros métodos (insertarTabla) puedan usarla.
-            this.conexion = conn;
+    /**
+     * Importa un modelo como {@link #save(WorkbookModel, Connection, ImportJob)}, pero
+     * añade las filas a las tablas indicadas en lugar de recrearlas. Lo usa
+     * {@link ImportEngine} cuando varios ficheros cargan la misma tabla.
+     *
+     * @param anexar nombres de las tablas del modelo que ya existen con las mismas columnas.
+     */
+    public ImportResult save(WorkbookModel modelo, Connection conn, ImportJob job, Set<String> anexar)
+            throws SQLException {
+        long inicio = System.nanoTime();
+        boolean autoCommit = conn.getAutoCommit();
+        RejectLog rechazos = RejectLog.forJob(job);
+        try {
             // Desactivamos el auto-commit: todas las sentencias formarán parte de la misma transacción.
             conn.setAutoCommit(false);
 
             // 1) Crear tablas según el contenido del Excel.
-            executeDDL();
+            Dialect dialecto = Dialect.forName(job.getOption("driver", "MySQL"));
+            crearTablas(modelo, conn, dialecto, anexar);
 
             // 2) Insertar los datos de cada tabla.
-            for (TableModel table : wbm.getTables()) {
-                insertarTabla(table);
+            long filas = 0;
+            long duplicadas = 0;
+            long rechazadas;
+            try (Writer informe = abrirInformeDuplicados(job); rechazos) {
+                for (TableModel table : modelo.getTables()) {
+                    long[] resultado = insertarTabla(conn, dialecto, table, job, informe, rechazos);
+                    filas += resultado[0];
+                    duplicadas += resultado[1];
+                }
+                rechazadas = rechazos.getCount();
+            } catch (IOException e) {
+                throw new RuntimeException("Error al escribir los informes de " + job.getInputFile(), e);
+            }
+            if (rechazadas > 0) {
+                System.out.println("Filas rechazadas por la base de datos: " + rechazadas
+                    + " (ver " + rechazos.getPath() + ")");
             }
 
             // 3) Confirmar la transacción: todas las operaciones quedan guardadas definitivamente.
             conn.commit();
-        } catch (Exception e) {
+            return new ImportResult(job.getInputFile(), modelo.getTables().size(), filas, duplicadas, rechazadas,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        } catch (SQLException | RuntimeException e) {
             // Si algo falla, intentamos revertir los cambios realizados en esta transacción.
-            if (conexion != null) {
-                try {
-                    conexion.rollback();
-                } catch (SQLException ignore) { }
-            }
-            throw new RuntimeException("Error al volcar los datos del Excel a la base de datos.", e);
-        } 
+            try {
+                conn.rollback();
+            } catch (SQLException ignore) { }
+            // Nada se ha importado: los rechazos anotados ya no dicen nada.
+            rechazos.discard();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
 
-        // Limpiamos la referencia para evitar reutilizar una conexión cerrada.
-        conexion = null;
+    /**
+     * Abre el informe de duplicados si se ha pedido con <b>dedupReport=true</b>.
+     *
+     * @return el destino del informe o {@code null} si no se genera.
+     */
+    private Writer abrirInformeDuplicados(ImportJob job) throws IOException {
+        if (!job.getBooleanOption("dedupReport", false) || job.getInputFile().isEmpty()) {
+            return null;
+        }
+        Writer informe = Files.newBufferedWriter(Path.of(job.getInputFile() + ".duplicados.csv"));
+        informe.write("tabla;fila_descartada;fila_conservada;clave" + System.lineSeparator());
+        return informe;
     }
 
     /**
-     * Inserta todas las filas de un {@link TableModel} en la base de datos.
+     * Inserta las filas de un {@link TableModel} en la base de datos.
      *
+     * @param conexion conexión sobre la que se insertan las filas.
+     * @param dialecto gestor de destino.
      * @param table tabla con la información procedente del Excel.
+     * @param job trabajo de importación (claves de deduplicación de la hoja).
+     * @param informe destino del informe de duplicados o {@code null}.
+     * @param rechazos registro de filas rechazadas (modo tolerante).
+     * @return filas insertadas y filas descartadas por clave repetida.
      */
-    private void insertarTabla(TableModel table) throws SQLException {
+    private long[] insertarTabla(Connection conexion, Dialect dialecto, TableModel table, ImportJob job,
+            Writer informe, RejectLog rechazos) throws SQLException, IOException {
         // No hay filas -> no hacemos nada.
         if (table.getRows().isEmpty()) {
-            return;
+            return new long[] { 0, 0 };
         }
 
-        // Montamos la sentencia INSERT con las columnas de la tabla.
-        StringBuilder sql = new StringBuilder();
-        sql.append("INSERT INTO `").append(table.getName()).append("` (");
+        // Primera pasada: si la hoja tiene clave de negocio, decidimos qué filas se quedan.
+        try (KeyDeduplicator dedup = KeyDeduplicator.forTable(table, job)) {
+            if (dedup != null) {
+                dedup.analyze(informe);
+                if (dedup.getDuplicates() > 0) {
+                    System.out.println("Filas duplicadas descartadas en " + table.getName() + ": "
+                        + dedup.getDuplicates());
+                }
+            }
 
-        int nCampos = table.getFields().size();
-        for (int i = 0; i < nCampos; i++) {
-            FieldModel field = table.getFields().get(i);
-            sql.append("`").append(field.getName()).append("`");
-            if (i < nCampos - 1) {
-                sql.append(", ");
+            // Vía masiva nativa del gestor (LOAD DATA, COPY); no sirve en el modo tolerante,
+            // que necesita aislar las filas que fallan.
+            if (!rechazos.isTolerant() && job.getBooleanOption("bulkLoad", true) && dialecto.supportsBulkLoad(conexion)) {
+                long cargadas = dialecto.bulkLoad(conexion, table, filtrar(table, dedup));
+                System.out.println("Carga masiva de " + table.getName() + " (" + dialecto.getName() + "): "
+                    + cargadas + " filas.");
+                return new long[] { cargadas, dedup == null ? 0 : dedup.getDuplicates() };
             }
-        }
-        sql.append(") VALUES (");
-        for (int i = 0; i < nCampos; i++) {
-            sql.append("?");
-            if (i < nCampos - 1) {
-                sql.append(", ");
+
+            int nCampos = table.getFields().size();
+
+            // Preparamos la sentencia y enviamos las filas del Excel por lotes.
+            BatchSizeController tamano = BatchSizeController.forTable(table.getName(), job);
+            try (PreparedStatement ps = conexion.prepareStatement(dialecto.insert(table))) {
+                BatchInserter lotes = new BatchInserter(conexion, ps, table.getName(), (sentencia, row) -> {
+                    for (int i = 0; i < nCampos; i++) {
+                        FieldType type = table.getFields().get(i).getType();
+                        Object value = i < row.size() ? row.get(i) : null;
+                        setPreparedValue(sentencia, i + 1, type, value);
+                    }
+                }, tamano, rechazos);
+
+                long fila = 0;
+                for (List<Object> row : table.getRows()) {
+                    long actual = fila++;
+                    if (dedup != null && !dedup.keep(actual, row)) {
+                        continue;
+                    }
+                    lotes.add(actual, row);
+                }
+                lotes.flush();
+                if (tamano.isAdaptive()) {
+                    System.out.println(tamano.summary());
+                }
+                return new long[] { lotes.getInserted(), dedup == null ? 0 : dedup.getDuplicates() };
             }
         }
-        sql.append(")");
+    }
 
-        // Preparamos la sentencia y vamos añadiendo cada fila del Excel como lote.
-        try (PreparedStatement ps = conexion.prepareStatement(sql.toString())) {
-            for (List<Object> row : table.getRows()) {
-                for (int i = 0; i < nCampos; i++) {
-                    FieldType type = table.getFields().get(i).getType();
-                    Object value = i < row.size() ? row.get(i) : null;
-                    setPreparedValue(ps, i + 1, type, value);
+    /**
+     * Recorre las filas de la tabla saltando las descartadas por clave repetida.
+     */
+    private static Iterator<List<Object>> filtrar(TableModel table, KeyDeduplicator dedup) {
+        Iterator<List<Object>> filas = table.getRows().iterator();
+        if (dedup == null) {
+            return filas;
+        }
+        return new Iterator<List<Object>>() {
+            private long fila;
+            private List<Object> siguiente;
+
+            @Override
+            public boolean hasNext() {
+                while (siguiente == null && filas.hasNext()) {
+                    List<Object> row = filas.next();
+                    if (dedup.keep(fila++, row)) {
+                        siguiente = row;
+                    }
                 }
-                ps.addBatch();
+                return siguiente != null;
             }
-            // Ejecutamos todas las filas de golpe para mayor eficiencia.
-            ps.executeBatch();
-        }
+
+            @Override
+            public List<Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<Object> row = siguiente;
+                siguiente = null;
+                return row;
+            }
+        };
     }
 
     /**
@@ -322,9 +782,15 @@ public class ExcelReader {
             case FLOAT:
                 ps.setDouble(index, ((Number) value).doubleValue());
                 break;
+            case DECIMAL:
+                ps.setBigDecimal(index, (BigDecimal) value);
+                break;
             case DATE:
                 ps.setDate(index, (java.sql.Date) value);
                 break;
+            case DATETIME:
+                ps.setTimestamp(index, (java.sql.Timestamp) value);
+                break;
             case BOOLEAN:
                 ps.setBoolean(index, (Boolean) value);
                 break;
@@ -337,49 +803,146 @@ public class ExcelReader {
 
     /**
      * Traduce el contenido de una celda a un tipo Java compatible con JDBC,
-     * respetando el tipo deducido previamente.
+     * respetando el tipo deducido previamente. Las celdas con error y las
+     * fórmulas sin resultado se leen como nulas.
+     *
+     * @param fecha1904 si las fechas del libro cuentan desde 1904.
      */
-    private Object readCellValue(Cell celda, FieldType tipo) {
+    private Object leerValor(CellData celda, FieldType tipo, boolean fecha1904) {
         if (celda == null) {
             return null;
         }
 
-        CellType cellType = celda.getCellType();
+        CellValue valor = celda.value();
+        CellType cellType = valor.getCellType();
 
         switch (tipo) {
             case INTEGER:
                 if (cellType == CellType.NUMERIC) {
-                    return Math.round(celda.getNumericCellValue());
+                    return Math.round(valor.getNumberValue());
+                }
+                if (cellType == CellType.STRING) {
+                    // La exportación escribe como texto los enteros que un double redondearía.
+                    return leerEnteroTexto(valor.getStringValue());
                 }
                 break;
             case FLOAT:
                 if (cellType == CellType.NUMERIC) {
-                    return celda.getNumericCellValue();
+                    return valor.getNumberValue();
+                }
+                if (cellType == CellType.STRING) {
+                    // La exportación escribe como texto los decimales de más de 15 dígitos.
+                    return leerNumeroTexto(valor.getStringValue());
+                }
+                break;
+            case DECIMAL:
+                if (cellType == CellType.NUMERIC) {
+                    return BigDecimal.valueOf(valor.getNumberValue());
+                }
+                if (cellType == CellType.STRING) {
+                    // Los de más de 15 dígitos vienen como texto y así se leen sin perder ninguno.
+                    return leerDecimalTexto(valor.getStringValue());
                 }
                 break;
             case DATE:
-                if (cellType == CellType.NUMERIC && DateUtil.isCellDateFormatted(celda)) {
-                    return new java.sql.Date(celda.getDateCellValue().getTime());
+            case DATETIME:
+                if (cellType == CellType.NUMERIC && esFecha(celda, valor.getNumberValue())) {
+                    long millis = DateUtil.getJavaDate(valor.getNumberValue(), fecha1904).getTime();
+                    return tipo == FieldType.DATE ? new java.sql.Date(millis) : new java.sql.Timestamp(millis);
+                }
+                if (cellType == CellType.STRING) {
+                    return leerFechaTexto(valor.getStringValue(), tipo);
                 }
                 break;
 
             case BOOLEAN:
                 if (cellType == CellType.BOOLEAN) {
-                    return celda.getBooleanCellValue();
+                    return valor.getBooleanValue();
                 }
                 break;
 
             case VARCHAR:
-                if (cellType == CellType.STRING) {
-                    String texto = celda.getStringCellValue();
-                    return texto.isEmpty() ? null : texto;
-                }
-                return celda.toString();
-
             case UNKNOWN:
-                return celda.toString();
+                switch (cellType) {
+                    case STRING:
+                        String texto = valor.getStringValue();
+                        return texto.isEmpty() ? null : texto;
+                    case NUMERIC:
+                        if (esFecha(celda, valor.getNumberValue())) {
+                            return textoFecha(valor.getNumberValue(), fecha1904);
+                        }
+                        return Double.toString(valor.getNumberValue());
+                    case BOOLEAN:
+                        return valor.getBooleanValue() ? "TRUE" : "FALSE";
+                    default:
+                        return null;
+                }
             }
 
         return null;
     }
+
+    /**
+     * Fecha de Excel como texto ISO, sin la hora si es medianoche.
+     */
+    private static String textoFecha(double valor, boolean fecha1904) {
+        LocalDateTime fecha = DateUtil.getLocalDateTime(valor, fecha1904);
+        return fecha.toLocalTime().equals(LocalTime.MIDNIGHT)
+            ? fecha.toLocalDate().toString()
+            : fecha.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+
+    /**
+     * Lee un número escrito como texto, o {@code null} si el texto no es un número.
+     */
+    private static Double leerNumeroTexto(String texto) {
+        try {
+            return texto.isBlank() ? null : Double.valueOf(texto.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lee un entero escrito como texto, o {@code null} si el texto no es un entero.
+     */
+    private static Long leerEnteroTexto(String texto) {
+        try {
+            return texto.isBlank() ? null : Long.valueOf(texto.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lee un decimal exacto escrito como texto, o {@code null} si el texto no es un número.
+     */
+    private static BigDecimal leerDecimalTexto(String texto) {
+        try {
+            return texto.isBlank() ? null : new BigDecimal(texto.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lee una fecha escrita como texto ISO (<code>yyyy-MM-dd</code> o
+     * <code>yyyy-MM-dd HH:mm:ss</code>), como exporta las anteriores a 1900, que
+     * Excel no puede guardar como fecha.
+     *
+     * @return la fecha del tipo pedido o {@code null} si el texto no es una fecha.
+     */
+    private static Object leerFechaTexto(String texto, FieldType tipo) {
+        String valor = texto.trim();
+        try {
+            if (valor.length() <= 10) {
+                java.sql.Date fecha = java.sql.Date.valueOf(valor);
+                return tipo == FieldType.DATE ? fecha : new java.sql.Timestamp(fecha.getTime());
+            }
+            java.sql.Timestamp fechaHora = java.sql.Timestamp.valueOf(valor.replace('T', ' '));
+            return tipo == FieldType.DATETIME ? fechaHora : new java.sql.Date(fechaHora.getTime());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+
+/**
+ * Calcula de antemano las fórmulas de un libro con un {@link FormulaEvaluator}.
+ * <p>
+ * Por defecto la importación no evalúa nada: usa el último resultado que Excel
+ * guardó en el fichero. Con <b>evaluateFormulas</b> se calculan:
+ * <ul>
+ *   <li><b>stale</b>: las fórmulas sin resultado guardado (libros generados por
+ *       programas que no calculan) o todas si el libro pide recalcular al abrirse;</li>
+ *   <li><b>all</b>: todas las fórmulas.</li>
+ * </ul>
+ * Todo el libro se evalúa en un solo hilo con un único evaluador: ni el libro ni
+ * los evaluadores de POI se pueden usar desde varios hilos a la vez, y un único
+ * evaluador reaprovecha su caché de resultados intermedios para las fórmulas que
+ * apuntan a otras hojas. Los resultados van a un mapa que la lectura consulta
+ * después. Evaluar solo lee el libro: los resultados no se escriben en las celdas.
+ */
+class FormulaPrecalculator {
+
+    private FormulaPrecalculator() {
+    }
+
+    /**
+     * Clave de una celda dentro de su hoja.
+     */
+    static long clave(Cell celda) {
+        return ((long) celda.getRowIndex() << 16) | celda.getColumnIndex();
+    }
+
+    /**
+     * Indica si la celda de fórmula no tiene resultado guardado en el fichero.
+     */
+    static boolean sinResultado(Cell celda) {
+        return celda instanceof XSSFCell xssf && !xssf.getCTCell().isSetV();
+    }
+
+    /**
+     * Evalúa las fórmulas del libro según el modo indicado.
+     *
+     * @param wb libro abierto.
+     * @param modo <b>none</b>, <b>stale</b> o <b>all</b>.
+     * @return por hoja, los valores calculados indexados con {@link #clave(Cell)}.
+     * @throws IllegalArgumentException si el modo no es válido.
+     */
+    static Map<Sheet, Map<Long, CellValue>> evaluate(Workbook wb, String modo) {
+        boolean todas;
+        switch (modo.trim().toLowerCase()) {
+            case "none":
+                return Map.of();
+            case "stale":
+                todas = wb.getForceFormulaRecalculation();
+                break;
+            case "all":
+                todas = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Valor no reconocido para evaluateFormulas: " + modo);
+        }
+
+        Map<Sheet, Map<Long, CellValue>> resultados = new HashMap<>();
+        long fallidas = 0;
+        FormulaEvaluator evaluador = wb.getCreationHelper().createFormulaEvaluator();
+        for (Sheet hoja : wb) {
+            Map<Long, CellValue> valores = new HashMap<>();
+            for (Row fila : hoja) {
+                for (Cell celda : fila) {
+                    if (celda.getCellType() != CellType.FORMULA || !(todas || sinResultado(celda))) {
+                        continue;
+                    }
+                    try {
+                        CellValue valor = evaluador.evaluate(celda);
+                        if (valor != null) {
+                            valores.put(clave(celda), valor);
+                        }
+                    } catch (RuntimeException e) {
+                        // Función no soportada por POI, referencia externa...: se usa el valor guardado.
+                        fallidas++;
+                    }
+                }
+            }
+            if (!valores.isEmpty()) {
+                resultados.put(hoja, valores);
+            }
+        }
+
+        if (fallidas > 0) {
+            System.err.println("No se pudieron evaluar " + fallidas
+                + " fórmulas; se usa su último resultado guardado.");
+        }
+        return resultados;
+    }
+}
@@ -0,0 +1,246 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.iesvdc.dam.acceso.conexion.ConnectionPool;
+import com.iesvdc.dam.acceso.modelo.FieldModel;
+import com.iesvdc.dam.acceso.modelo.MemoryBudget;
+import com.iesvdc.dam.acceso.modelo.TableModel;
+import com.iesvdc.dam.acceso.modelo.WorkbookModel;
+
+/**
+ * Motor de importación reutilizable y seguro entre hilos.
+ * <p>
+ * No guarda estado de ningún trabajo concreto: cada {@link ImportJob} se procesa
+ * con sus propios datos y solo se comparten recursos pensados para ello:
+ * <ul>
+ *   <li>Un {@link ConnectionPool} limitado por la propiedad <b>maxDbConcurrency</b> o, si no
+ *       está definida, <b>poolSize</b> (4 por defecto).</li>
+ *   <li>Un {@link ExcelReader} sin estado, con su caché de inferencia de tipos.</li>
+ *   <li>Las {@link ImportMetrics} acumuladas.</li>
+ *   <li>Un {@link MemoryBudget} de <b>rowBufferBytes</b> bytes (por defecto
+ *       {@link MemoryBudget#defaultLimit()}) para las filas de todos los libros leídos.</li>
+ * </ul>
+ * Por defecto cada trabajo se ejecuta en su propio hilo virtual. Como mucho
+ * <b>maxParseConcurrency</b> trabajos leen su Excel a la vez (por defecto uno por
+ * cada 256 MiB de heap, sin pasar del número de procesadores), y la escritura espera
+ * a que el pool tenga una conexión libre. Así el límite de conexiones se ajusta a lo
+ * que aguanta la base de datos y el de lecturas a lo que cabe en memoria.
+ * <p>
+ * Si varios trabajos cargan la misma tabla, se vuelcan de uno en uno: el primero que
+ * termina la crea y los siguientes le añaden sus filas, siempre que tengan las mismas
+ * columnas; si no, fallan sin tocarla. Así los ficheros de un mismo patrón no se
+ * borran la tabla unos a otros. Volver a importar el fichero que creó una tabla la
+ * recrea.
+ */
+public class ImportEngine implements AutoCloseable {
+    private final ExcelReader reader = new ExcelReader();
+    private final ImportMetrics metrics = new ImportMetrics();
+    private final ConnectionPool pool;
+    private final ExecutorService executor;
+    private final MemoryBudget presupuesto;
+    private final Semaphore lecturas;
+    /** Cerrojo por tabla (en minúsculas, por los gestores que no distinguen). */
+    private final Map<String, ReentrantLock> bloqueos = new ConcurrentHashMap<>();
+    /** Tablas creadas por este motor: fichero y columnas con las que se crearon. */
+    private final Map<String, Creada> creadas = new ConcurrentHashMap<>();
+
+    private record Creada(String file, List<String> columns) {
+    }
+
+    /**
+     * Crea un motor que ejecuta cada trabajo en un hilo virtual.
+     *
+     * @param props propiedades de conexión (las mismas que <b>config.properties</b>).
+     */
+    public ImportEngine(Properties props) {
+        this(props, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Crea un motor que ejecuta los trabajos en el {@link ExecutorService} indicado.
+     * El motor se hace cargo de él y lo detiene en {@link #close()}.
+     */
+    public ImportEngine(Properties props, ExecutorService executor) {
+        String limite = props.getProperty("maxDbConcurrency");
+        if (limite == null || limite.isBlank()) {
+            limite = props.getProperty("poolSize", "4");
+        }
+        this.pool = new ConnectionPool(props, Integer.parseInt(limite.trim()));
+        this.executor = executor;
+
+        String memoria = props.getProperty("rowBufferBytes");
+        this.presupuesto = new MemoryBudget(memoria == null || memoria.isBlank()
+            ? MemoryBudget.defaultLimit()
+            : Long.parseLong(memoria.trim()));
+        String lectores = props.getProperty("maxParseConcurrency");
+        this.lecturas = new Semaphore(lectores == null || lectores.isBlank()
+            ? lecturasPorDefecto()
+            : Integer.parseInt(lectores.trim()));
+    }
+
+    /** Una lectura por cada 256 MiB de heap, entre 1 y el número de procesadores. */
+    private static int lecturasPorDefecto() {
+        long porHeap = Runtime.getRuntime().maxMemory() / (256L * 1024 * 1024);
+        return (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), porHeap));
+    }
+
+    public ImportMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Lanza un trabajo de forma asíncrona.
+     *
+     * @param job trabajo a ejecutar.
+     * @return futuro con el resultado; termina con excepción si la importación falla.
+     */
+    public CompletableFuture<ImportResult> submit(ImportJob job) {
+        return CompletableFuture.supplyAsync(() -> run(job), executor);
+    }
+
+    /**
+     * Ejecuta un trabajo en el hilo actual. La lectura del Excel se hace sin
+     * conexión; solo la escritura ocupa una conexión del pool, y antes espera a
+     * que ningún otro trabajo esté volcando sus tablas.
+     *
+     * @param job trabajo a ejecutar.
+     * @return el resultado de la importación.
+     * @throws RuntimeException si no se puede leer el fichero o volcar los datos.
+     */
+    public ImportResult run(ImportJob job) {
+        long inicio = System.nanoTime();
+        try (WorkbookModel modelo = leer(job)) {
+
+            ImportResult resultado;
+            List<ReentrantLock> cerrojos = bloquear(modelo);
+            try {
+                Set<String> anexar = tablasExistentes(modelo, job);
+                Connection conn = pool.borrow();
+                try {
+                    resultado = reader.save(modelo, conn, job, anexar);
+                } finally {
+                    pool.release(conn);
+                }
+                for (TableModel tabla : modelo.getTables()) {
+                    if (!anexar.contains(tabla.getName())) {
+                        creadas.put(tabla.getName(), new Creada(job.getInputFile(), columnas(tabla)));
+                    }
+                }
+            } finally {
+                for (int i = cerrojos.size() - 1; i >= 0; i--) {
+                    cerrojos.get(i).unlock();
+                }
+            }
+
+            resultado = resultado.withElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+            metrics.registrar(resultado);
+            return resultado;
+        } catch (IOException e) {
+            metrics.registrarFallo();
+            throw new RuntimeException("Imposible cargar el archivo Excel " + job.getInputFile(), e);
+        } catch (SQLException | RuntimeException e) {
+            metrics.registrarFallo();
+            throw new RuntimeException("Error al volcar " + job.getInputFile() + " a la base de datos.", e);
+        }
+    }
+
+    /**
+     * Lee el libro del trabajo cuando hay sitio para otra lectura.
+     */
+    private WorkbookModel leer(ImportJob job) throws IOException {
+        try {
+            lecturas.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Lectura interrumpida");
+        }
+        try {
+            return reader.parse(job, presupuesto);
+        } finally {
+            lecturas.release();
+        }
+    }
+
+    /**
+     * Toma los cerrojos de las tablas del modelo, siempre en el mismo orden para
+     * que dos trabajos no se esperen el uno al otro.
+     */
+    private List<ReentrantLock> bloquear(WorkbookModel modelo) {
+        Set<String> nombres = new TreeSet<>();
+        for (TableModel tabla : modelo.getTables()) {
+            nombres.add(tabla.getName().toLowerCase());
+        }
+        List<ReentrantLock> cerrojos = new ArrayList<>();
+        for (String nombre : nombres) {
+            ReentrantLock cerrojo = bloqueos.computeIfAbsent(nombre, n -> new ReentrantLock());
+            cerrojo.lock();
+            cerrojos.add(cerrojo);
+        }
+        return cerrojos;
+    }
+
+    /**
+     * Tablas del modelo que ya ha creado otro trabajo y a las que solo hay que
+     * añadir filas.
+     *
+     * @throws IllegalStateException si alguna se creó con otras columnas.
+     */
+    private Set<String> tablasExistentes(WorkbookModel modelo, ImportJob job) {
+        Set<String> anexar = new HashSet<>();
+        for (TableModel tabla : modelo.getTables()) {
+            Creada previa = creadas.get(tabla.getName());
+            // Volver a importar el fichero que la creó la recrea.
+            if (previa == null || previa.file().equals(job.getInputFile())) {
+                continue;
+            }
+            if (!previa.columns().equals(columnas(tabla))) {
+                throw new IllegalStateException("La tabla " + tabla.getName() + " ya se importó desde "
+                    + previa.file() + " con otras columnas: " + previa.columns() + " en lugar de "
+                    + columnas(tabla) + ".");
+            }
+            anexar.add(tabla.getName());
+        }
+        return anexar;
+    }
+
+    /** Nombre y tipo de cada columna, para comparar tablas de ficheros distintos. */
+    private static List<String> columnas(TableModel tabla) {
+        List<String> columnas = new ArrayList<>();
+        for (FieldModel campo : tabla.getFields()) {
+            columnas.add(campo.getName() + " " + campo.getType());
+        }
+        return columnas;
+    }
+
+    /**
+     * Espera a que terminen los trabajos pendientes y cierra el pool de conexiones.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pool.close();
+    }
+}
@@ -0,0 +1,73 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Trabajo de importación inmutable: el fichero Excel a cargar y las opciones
+ * que afectan a cómo se carga. Se puede compartir entre hilos sin sincronizar.
+ * <p>
+ * Las opciones usan las mismas claves que <b>config.properties</b>; se guarda
+ * una copia privada, así que modificar después las propiedades originales no
+ * afecta al trabajo.
+ */
+public final class ImportJob {
+    private final String inputFile;
+    private final Properties options;
+
+    public ImportJob(String inputFile) {
+        this(inputFile, new Properties());
+    }
+
+    public ImportJob(String inputFile, Properties options) {
+        this.inputFile = Objects.requireNonNull(inputFile, "inputFile");
+        this.options = new Properties();
+        this.options.putAll(options);
+    }
+
+    public String getInputFile() {
+        return this.inputFile;
+    }
+
+    /**
+     * Devuelve el valor de una opción o el valor por defecto si no está definida.
+     */
+    public String getOption(String key, String defaultValue) {
+        return options.getProperty(key, defaultValue);
+    }
+
+    /**
+     * Devuelve una opción numérica o el valor por defecto si no está definida.
+     *
+     * @throws IllegalArgumentException si el valor no es un número entero.
+     */
+    public long getLongOption(String key, long defaultValue) {
+        String valor = options.getProperty(key);
+        if (valor == null || valor.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("La opción " + key + " debe ser un número entero: " + valor, e);
+        }
+    }
+
+    /**
+     * Devuelve una opción booleana ("true"/"false") o el valor por defecto si no está definida.
+     */
+    public boolean getBooleanOption(String key, boolean defaultValue) {
+        String valor = options.getProperty(key);
+        if (valor == null || valor.isBlank()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(valor.trim());
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+            " inputFile='" + getInputFile() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,73 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores acumulados de todas las importaciones de un {@link ImportEngine}.
+ * Usa {@link LongAdder} para que muchos trabajos concurrentes puedan actualizarlos
+ * sin contención.
+ */
+public class ImportMetrics {
+    private final LongAdder completados = new LongAdder();
+    private final LongAdder fallidos = new LongAdder();
+    private final LongAdder tablas = new LongAdder();
+    private final LongAdder filas = new LongAdder();
+    private final LongAdder duplicadas = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+    private final LongAdder milisegundos = new LongAdder();
+
+    void registrar(ImportResult resultado) {
+        completados.increment();
+        tablas.add(resultado.getTables());
+        filas.add(resultado.getRows());
+        duplicadas.add(resultado.getDuplicates());
+        rechazadas.add(resultado.getRejected());
+        milisegundos.add(resultado.getElapsedMillis());
+    }
+
+    void registrarFallo() {
+        fallidos.increment();
+    }
+
+    public long getCompletedJobs() {
+        return completados.sum();
+    }
+
+    public long getFailedJobs() {
+        return fallidos.sum();
+    }
+
+    public long getTables() {
+        return tablas.sum();
+    }
+
+    public long getRows() {
+        return filas.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicadas.sum();
+    }
+
+    public long getRejected() {
+        return rechazadas.sum();
+    }
+
+    /** Suma del tiempo de todos los trabajos completados (no el tiempo de pared). */
+    public long getElapsedMillis() {
+        return milisegundos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+            " completedJobs='" + getCompletedJobs() + "'" +
+            ", failedJobs='" + getFailedJobs() + "'" +
+            ", tables='" + getTables() + "'" +
+            ", rows='" + getRows() + "'" +
+            ", duplicates='" + getDuplicates() + "'" +
+            ", rejected='" + getRejected() + "'" +
+            ", elapsedMillis='" + getElapsedMillis() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,68 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+/**
+ * Resultado inmutable de un {@link ImportJob} terminado con éxito.
+ */
+public final class ImportResult {
+    private final String inputFile;
+    private final int tables;
+    private final long rows;
+    private final long duplicates;
+    private final long rejected;
+    private final long elapsedMillis;
+
+    public ImportResult(String inputFile, int tables, long rows, long duplicates, long rejected,
+            long elapsedMillis) {
+        this.inputFile = inputFile;
+        this.tables = tables;
+        this.rows = rows;
+        this.duplicates = duplicates;
+        this.rejected = rejected;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Copia del resultado con otro tiempo total.
+     */
+    public ImportResult withElapsedMillis(long elapsedMillis) {
+        return new ImportResult(inputFile, tables, rows, duplicates, rejected, elapsedMillis);
+    }
+
+    public String getInputFile() {
+        return this.inputFile;
+    }
+
+    public int getTables() {
+        return this.tables;
+    }
+
+    public long getRows() {
+        return this.rows;
+    }
+
+    /** Filas descartadas por tener la clave repetida. */
+    public long getDuplicates() {
+        return this.duplicates;
+    }
+
+    /** Filas rechazadas por la base de datos en el modo tolerante. */
+    public long getRejected() {
+        return this.rejected;
+    }
+
+    public long getElapsedMillis() {
+        return this.elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+            " inputFile='" + getInputFile() + "'" +
+            ", tables='" + getTables() + "'" +
+            ", rows='" + getRows() + "'" +
+            ", duplicates='" + getDuplicates() + "'" +
+            ", rejected='" + getRejected() + "'" +
+            ", elapsedMillis='" + getElapsedMillis() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,81 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resumen de una importación de varios ficheros: una línea por fichero con sus
+ * filas, tiempo, rendimiento y descartes (o el error que la hizo fallar), y los
+ * totales de la ejecución.
+ * <p>
+ * El rendimiento total se calcula con el tiempo de pared, no con la suma de los
+ * tiempos de cada fichero, que con importaciones simultáneas es mucho mayor.
+ */
+public class ImportSummary {
+
+    private record Linea(String file, ImportResult result, String error) {
+    }
+
+    private final List<Linea> lineas = new ArrayList<>();
+
+    /**
+     * Anota un fichero importado.
+     */
+    public void add(ImportResult resultado) {
+        lineas.add(new Linea(resultado.getInputFile(), resultado, null));
+    }
+
+    /**
+     * Anota un fichero que no se pudo importar.
+     *
+     * @param error excepción con la que terminó el trabajo.
+     */
+    public void addFailure(String file, Throwable error) {
+        // La causa original está debajo de los envoltorios del futuro y del motor.
+        Throwable causa = error;
+        while (causa.getCause() != null && causa.getCause() != causa) {
+            causa = causa.getCause();
+        }
+        lineas.add(new Linea(file, null, causa.getMessage() != null ? causa.getMessage() : causa.toString()));
+    }
+
+    public int getFailures() {
+        return (int) lineas.stream().filter(l -> l.result() == null).count();
+    }
+
+    /**
+     * Escribe el resumen.
+     *
+     * @param salida dónde se escribe.
+     * @param paredMillis tiempo total de la ejecución.
+     */
+    public void print(PrintStream salida, long paredMillis) {
+        long filas = 0;
+        long duplicadas = 0;
+        long rechazadas = 0;
+        salida.printf("%-40s %-6s %10s %8s %10s %8s %8s%n",
+            "Fichero", "Estado", "Filas", "ms", "Filas/s", "Dupl.", "Rech.");
+        for (Linea l : lineas) {
+            ImportResult r = l.result();
+            if (r == null) {
+                salida.printf("%-40s %-6s %s%n", l.file(), "ERROR", l.error());
+                continue;
+            }
+            salida.printf("%-40s %-6s %10d %8d %10d %8d %8d%n", l.file(), "OK", r.getRows(),
+                r.getElapsedMillis(), porSegundo(r.getRows(), r.getElapsedMillis()), r.getDuplicates(), r.getRejected());
+            filas += r.getRows();
+            duplicadas += r.getDuplicates();
+            rechazadas += r.getRejected();
+        }
+        int fallidos = getFailures();
+        salida.println("Ficheros: " + lineas.size() + " (" + (lineas.size() - fallidos) + " correctos, "
+            + fallidos + " con error). Filas: " + filas + " en " + paredMillis + " ms ("
+            + porSegundo(filas, paredMillis) + " filas/s). Descartadas: " + duplicadas + " duplicadas, "
+            + rechazadas + " rechazadas.");
+    }
+
+    private static long porSegundo(long filas, long millis) {
+        return filas * 1000 / Math.max(1, millis);
+    }
+}
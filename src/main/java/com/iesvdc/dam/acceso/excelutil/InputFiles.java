@@ -0,0 +1,83 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Convierte el valor de <b>inputFile</b> en la lista de libros que hay que importar:
+ * <ul>
+ *   <li>un fichero: ese fichero;</li>
+ *   <li>un directorio: sus ficheros <code>.xlsx</code> (sin entrar en subdirectorios);</li>
+ *   <li>un patrón con <code>*</code>, <code>?</code>, <code>[...]</code> o <code>{...}</code>:
+ *       los ficheros que encajan, por ejemplo <code>datos/*.xlsx</code> o
+ *       <code>entrada/**&#47;pedidos_*.xlsx</code> (<code>**</code> entra en subdirectorios).</li>
+ * </ul>
+ * Se omiten los ficheros de bloqueo que deja Excel (<code>~$libro.xlsx</code>).
+ * La lista se devuelve ordenada por ruta.
+ */
+public final class InputFiles {
+
+    private InputFiles() {
+    }
+
+    /**
+     * @param entrada fichero, directorio o patrón.
+     * @return los ficheros encontrados (puede estar vacía).
+     * @throws IOException si no se puede recorrer el directorio.
+     */
+    public static List<Path> resolve(String entrada) throws IOException {
+        if (!esPatron(entrada)) {
+            Path ruta = Path.of(entrada);
+            if (!Files.isDirectory(ruta)) {
+                return List.of(ruta);
+            }
+            return buscar(ruta, 1, FileSystems.getDefault().getPathMatcher("glob:*.xlsx"));
+        }
+
+        // El directorio base es la parte del patrón anterior al primer comodín.
+        // Se trabaja con texto porque en Windows un comodín no es válido en un Path.
+        String[] partes = entrada.replace('\\', '/').split("/", -1);
+        int i = 0;
+        while (i < partes.length - 1 && !esPatron(partes[i])) {
+            i++;
+        }
+        String base = String.join("/", Arrays.copyOfRange(partes, 0, i));
+        if (base.isEmpty()) {
+            base = entrada.startsWith("/") ? "/" : ".";
+        }
+        String glob = String.join("/", Arrays.copyOfRange(partes, i, partes.length));
+        int profundidad = glob.contains("**") ? Integer.MAX_VALUE : partes.length - i;
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        if (glob.startsWith("**/")) {
+            // Como en las shells, "**/" también vale para el propio directorio base.
+            PathMatcher sinDirectorio = FileSystems.getDefault().getPathMatcher("glob:" + glob.substring(3));
+            PathMatcher conDirectorio = matcher;
+            matcher = ruta -> conDirectorio.matches(ruta) || sinDirectorio.matches(ruta);
+        }
+        return buscar(Path.of(base), profundidad, matcher);
+    }
+
+    private static List<Path> buscar(Path base, int profundidad, PathMatcher matcher) throws IOException {
+        if (!Files.isDirectory(base)) {
+            return List.of();
+        }
+        try (Stream<Path> rutas = Files.walk(base, profundidad)) {
+            return rutas
+                .filter(Files::isRegularFile)
+                .filter(ruta -> matcher.matches(base.relativize(ruta)))
+                .filter(ruta -> !ruta.getFileName().toString().startsWith("~$"))
+                .sorted()
+                .toList();
+        }
+    }
+
+    private static boolean esPatron(String texto) {
+        return texto.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+}
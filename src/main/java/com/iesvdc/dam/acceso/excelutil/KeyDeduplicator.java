@@ -0,0 +1,207 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.iesvdc.dam.acceso.modelo.FieldModel;
+import com.iesvdc.dam.acceso.modelo.TableModel;
+
+/**
+ * Elimina filas con la clave de negocio repetida antes de insertarlas.
+ * <p>
+ * Se configura por hoja con <b>dedupKeys.&lt;hoja&gt;</b> (columnas separadas por
+ * comas) y <b>dedupPolicy</b> o <b>dedupPolicy.&lt;hoja&gt;</b>:
+ * <ul>
+ *   <li><b>first</b> (por defecto): se conserva la primera fila de cada clave.</li>
+ *   <li><b>last</b>: se conserva la última.</li>
+ * </ul>
+ * Funciona en dos pasadas sobre las filas: la primera calcula un hash de 64 bits
+ * de la clave de cada fila y guarda en un {@link LongIndexMap} qué fila se queda
+ * con ella; la segunda ({@link #keep(long, List)}) deja pasar solo esas filas.
+ * Las filas con algún valor de clave vacío no se consideran duplicadas (como
+ * en una restricción UNIQUE de SQL).
+ * <p>
+ * Con <b>dedupReport=true</b> se escribe junto al Excel un informe
+ * <code>&lt;fichero&gt;.duplicados.csv</code> con la tabla, la fila descartada, la fila
+ * que finalmente se conserva (contando desde la primera fila de datos) y la clave.
+ * <p>
+ * Al comparar hashes y no valores, dos claves distintas podrían coincidir; con
+ * 64 bits la probabilidad es despreciable incluso con cientos de millones de filas.
+ * <p>
+ * El índice de claves está fuera del heap: hay que cerrar el deduplicador al
+ * terminar con la tabla.
+ */
+class KeyDeduplicator implements AutoCloseable {
+    private final TableModel table;
+    private final int[] columnas;
+    private final boolean ultima;
+    private final LongIndexMap ganadoras;
+    private long duplicadas;
+
+    private KeyDeduplicator(TableModel table, int[] columnas, boolean ultima) {
+        this.table = table;
+        this.columnas = columnas;
+        this.ultima = ultima;
+        this.ganadoras = new LongIndexMap(table.getRows().size());
+    }
+
+    /**
+     * Crea el deduplicador de la tabla según las opciones del trabajo.
+     *
+     * @return el deduplicador o {@code null} si la hoja no tiene claves configuradas.
+     * @throws IllegalArgumentException si una columna de la clave no existe o la política no es válida.
+     */
+    static KeyDeduplicator forTable(TableModel table, ImportJob job) {
+        String claves = job.getOption("dedupKeys." + table.getName(), null);
+        if (claves == null || claves.isBlank()) {
+            return null;
+        }
+
+        List<FieldModel> campos = table.getFields();
+        String[] nombres = claves.split(",");
+        int[] columnas = new int[nombres.length];
+        for (int i = 0; i < nombres.length; i++) {
+            columnas[i] = -1;
+            for (int j = 0; j < campos.size(); j++) {
+                if (campos.get(j).getName().equalsIgnoreCase(nombres[i].trim())) {
+                    columnas[i] = j;
+                    break;
+                }
+            }
+            if (columnas[i] < 0) {
+                throw new IllegalArgumentException("La columna de clave " + nombres[i].trim()
+                    + " no existe en la hoja " + table.getName());
+            }
+        }
+
+        String politica = job.getOption("dedupPolicy." + table.getName(), job.getOption("dedupPolicy", "first"))
+            .trim().toLowerCase();
+        if (!politica.equals("first") && !politica.equals("last")) {
+            throw new IllegalArgumentException("Valor no reconocido para dedupPolicy: " + politica);
+        }
+        return new KeyDeduplicator(table, columnas, politica.equals("last"));
+    }
+
+    /**
+     * Primera pasada: decide qué fila se queda con cada clave.
+     * <p>
+     * Con <b>last</b> la fila que se conserva no se conoce hasta el final, así que
+     * el informe se escribe en un recorrido aparte cuando ya está decidida.
+     *
+     * @param informe destino del informe de duplicados (CSV) o {@code null}.
+     */
+    void analyze(Writer informe) throws IOException {
+        long fila = 0;
+        for (List<Object> row : table.getRows()) {
+            long hash = hash(row);
+            if (hash != 0 && ganadoras.put(hash, fila, ultima) != LongIndexMap.AUSENTE) {
+                duplicadas++;
+            }
+            fila++;
+        }
+        if (informe == null || duplicadas == 0) {
+            return;
+        }
+
+        fila = 0;
+        for (List<Object> row : table.getRows()) {
+            long hash = hash(row);
+            long conservada = hash == 0 ? fila : ganadoras.get(hash);
+            if (conservada != fila) {
+                informe.write(table.getName() + ";" + (fila + 1) + ";" + (conservada + 1) + ";\""
+                    + clave(row).replace("\"", "\"\"") + "\"" + System.lineSeparator());
+            }
+            fila++;
+        }
+    }
+
+    /**
+     * Segunda pasada: indica si la fila número {@code fila} (empezando en 0) se inserta.
+     */
+    boolean keep(long fila, List<Object> row) {
+        long hash = hash(row);
+        return hash == 0 || ganadoras.get(hash) == fila;
+    }
+
+    /** Filas descartadas por tener la clave repetida. */
+    long getDuplicates() {
+        return duplicadas;
+    }
+
+    /**
+     * Hash de 64 bits de los valores de la clave, o 0 si alguno es nulo.
+     */
+    private long hash(List<Object> row) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int columna : columnas) {
+            Object valor = columna < row.size() ? row.get(columna) : null;
+            if (valor == null) {
+                return 0;
+            }
+            // El tipo entra en el hash para que 1 (entero) y "1" (texto) no coincidan.
+            long v;
+            int tipo;
+            if (valor instanceof Long || valor instanceof Integer) {
+                v = ((Number) valor).longValue();
+                tipo = 1;
+            } else if (valor instanceof Double d) {
+                v = Double.doubleToLongBits(d);
+                tipo = 2;
+            } else if (valor instanceof BigDecimal d) {
+                // 1.5 y 1.50 son la misma clave.
+                v = hashTexto(d.stripTrailingZeros().toPlainString());
+                tipo = 6;
+            } else if (valor instanceof Boolean b) {
+                v = b ? 1 : 0;
+                tipo = 3;
+            } else if (valor instanceof java.util.Date fecha) {
+                v = fecha.getTime();
+                tipo = 4;
+            } else {
+                v = hashTexto(valor.toString());
+                tipo = 5;
+            }
+            h = mezclar(h ^ (mezclar(v) + tipo));
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /** FNV-1a de 64 bits sobre los caracteres del texto. */
+    private static long hashTexto(String texto) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < texto.length(); i++) {
+            h ^= texto.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /** Finalizador de MurmurHash3: reparte bien los bits. */
+    private static long mezclar(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Libera el índice de claves.
+     */
+    @Override
+    public void close() {
+        ganadoras.close();
+    }
+
+    private String clave(List<Object> row) {
+        List<String> valores = new ArrayList<>();
+        for (int columna : columnas) {
+            valores.add(String.valueOf(row.get(columna)));
+        }
+        return String.join(",", valores);
+    }
+}
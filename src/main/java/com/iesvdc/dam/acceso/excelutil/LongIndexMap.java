@@ -0,0 +1,174 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Tabla hash de direccionamiento abierto que asocia claves <code>long</code>
+ * a posiciones de fila (<code>long</code>), guardada fuera del heap.
+ * <p>
+ * Cada hueco ocupa 16 bytes (clave + valor) en {@link ByteBuffer}s directos de
+ * como mucho 64 MiB, sin objetos por entrada, así que decenas de millones de
+ * claves caben sin presión sobre el recolector de basura. La capacidad se fija
+ * al crearla (el doble de las entradas esperadas, redondeado a potencia de dos)
+ * y no crece; el último segmento solo ocupa lo que hace falta.
+ * <p>
+ * La memoria directa no cuenta para el recolector, que la devolvería tarde: hay
+ * que cerrar la tabla con {@link #close()} en cuanto deja de usarse.
+ * <p>
+ * La clave 0 marca un hueco libre: quien la use debe evitar ese valor.
+ */
+class LongIndexMap implements AutoCloseable {
+    /** Valor devuelto cuando la clave no está. */
+    static final long AUSENTE = -1;
+
+    private static final int BYTES_HUECO = 16;
+    /** Huecos por segmento: 2^22 * 16 bytes = 64 MiB. */
+    private static final int BITS_SEGMENTO = 22;
+
+    /** {@code sun.misc.Unsafe} e {@code invokeCleaner}, para liberar los segmentos al cerrar. */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method limpiar = null;
+        try {
+            Class<?> clase = Class.forName("sun.misc.Unsafe");
+            Field campo = clase.getDeclaredField("theUnsafe");
+            campo.setAccessible(true);
+            unsafe = campo.get(null);
+            limpiar = clase.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Sin Unsafe la memoria se devuelve cuando el recolector recoge los segmentos.
+            unsafe = null;
+            limpiar = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = limpiar;
+    }
+
+    private final ByteBuffer[] segmentos;
+    private final int bitsSegmento;
+    private final long mascara;
+    private final long capacidad;
+    private long size;
+
+    /**
+     * @param esperadas número máximo de claves distintas que se van a guardar.
+     */
+    LongIndexMap(long esperadas) {
+        this(esperadas, BITS_SEGMENTO);
+    }
+
+    /**
+     * @param esperadas número máximo de claves distintas que se van a guardar.
+     * @param bitsSegmento huecos por segmento en potencia de dos (las pruebas usan segmentos pequeños).
+     */
+    LongIndexMap(long esperadas, int bitsSegmento) {
+        this.bitsSegmento = bitsSegmento;
+        long huecos = Long.highestOneBit(Math.max(16, esperadas * 2 - 1)) << 1;
+        this.capacidad = huecos;
+        this.mascara = huecos - 1;
+
+        long porSegmento = 1L << bitsSegmento;
+        int nSegmentos = (int) ((huecos + porSegmento - 1) / porSegmento);
+        this.segmentos = new ByteBuffer[nSegmentos];
+        for (int i = 0; i < nSegmentos; i++) {
+            long enEste = Math.min(porSegmento, huecos - i * porSegmento);
+            // allocateDirect ya devuelve la memoria a cero: todos los huecos libres.
+            segmentos[i] = ByteBuffer.allocateDirect((int) (enEste * BYTES_HUECO));
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Devuelve el valor asociado a la clave o {@link #AUSENTE}.
+     */
+    long get(long key) {
+        for (long hueco = inicio(key); ; hueco = (hueco + 1) & mascara) {
+            long actual = clave(hueco);
+            if (actual == key) {
+                return valor(hueco);
+            }
+            if (actual == 0) {
+                return AUSENTE;
+            }
+        }
+    }
+
+    /**
+     * Asocia el valor a la clave.
+     *
+     * @param replace si es {@code false} y la clave ya existe, se mantiene el valor anterior.
+     * @return el valor anterior o {@link #AUSENTE} si la clave es nueva.
+     */
+    long put(long key, long value, boolean replace) {
+        if (key == 0) {
+            throw new IllegalArgumentException("La clave 0 está reservada.");
+        }
+        for (long hueco = inicio(key); ; hueco = (hueco + 1) & mascara) {
+            long actual = clave(hueco);
+            if (actual == key) {
+                long anterior = valor(hueco);
+                if (replace) {
+                    escribir(hueco, key, value);
+                }
+                return anterior;
+            }
+            if (actual == 0) {
+                if (size + 1 >= capacidad) {
+                    throw new IllegalStateException("Tabla de claves llena: se esperaban menos claves distintas.");
+                }
+                escribir(hueco, key, value);
+                size++;
+                return AUSENTE;
+            }
+        }
+    }
+
+    /**
+     * Devuelve la memoria de los segmentos. Después la tabla ya no se puede usar.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < segmentos.length; i++) {
+            if (segmentos[i] != null && INVOKE_CLEANER != null) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, segmentos[i]);
+                } catch (ReflectiveOperationException e) {
+                    // Se queda para el recolector.
+                }
+            }
+            segmentos[i] = null;
+        }
+    }
+
+    private long inicio(long key) {
+        // Las claves ya son hashes, pero mezclamos los bits altos por si no lo son.
+        return (key ^ (key >>> 32)) & mascara;
+    }
+
+    private long clave(long hueco) {
+        return segmentos[(int) (hueco >>> bitsSegmento)].getLong(posicion(hueco));
+    }
+
+    private long valor(long hueco) {
+        return segmentos[(int) (hueco >>> bitsSegmento)].getLong(posicion(hueco) + Long.BYTES);
+    }
+
+    private void escribir(long hueco, long key, long value) {
+        ByteBuffer segmento = segmentos[(int) (hueco >>> bitsSegmento)];
+        int posicion = posicion(hueco);
+        segmento.putLong(posicion, key);
+        segmento.putLong(posicion + Long.BYTES, value);
+    }
+
+    private int posicion(long hueco) {
+        return (int) (hueco & ((1L << bitsSegmento) - 1)) * BYTES_HUECO;
+    }
+}
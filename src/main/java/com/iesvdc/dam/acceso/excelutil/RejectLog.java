@@ -0,0 +1,114 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Registro de las filas rechazadas por la base de datos en el modo tolerante.
+ * <p>
+ * Con <b>maxErrors</b> distinto de 0 la importación no se aborta por una fila
+ * errónea: la fila se anota en <code>&lt;fichero&gt;.rechazos.csv</code> (tabla,
+ * fila contando desde la primera fila de datos, error SQL y valores) y se sigue
+ * con el resto. Si se superan <b>maxErrors</b> rechazos se lanza una
+ * {@link SQLException} y la transacción completa se revierte. Un valor negativo
+ * no pone límite.
+ * <p>
+ * El fichero solo se crea si hay algún rechazo. Si el trabajo no tiene fichero
+ * de entrada se usa un fichero temporal, cuya ruta da {@link #getPath()}. Si la
+ * transacción se revierte, las filas no se han importado ni rechazado: el
+ * fichero se borra con {@link #discard()}.
+ */
+class RejectLog implements Closeable {
+    private final long maxErrors;
+    private Path fichero;
+    private Writer salida;
+    private long rechazadas;
+
+    RejectLog(String inputFile, long maxErrors) {
+        this.fichero = inputFile.isEmpty() ? null : Path.of(inputFile + ".rechazos.csv");
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Crea el registro según la opción <b>maxErrors</b> del trabajo (0 por defecto).
+     */
+    static RejectLog forJob(ImportJob job) {
+        return new RejectLog(job.getInputFile(), job.getLongOption("maxErrors", 0));
+    }
+
+    /** Indica si las filas erróneas se apartan en lugar de abortar la importación. */
+    boolean isTolerant() {
+        return maxErrors != 0;
+    }
+
+    long getCount() {
+        return rechazadas;
+    }
+
+    /** Fichero de rechazos; {@code null} si el trabajo no tiene fichero y no ha habido ninguno. */
+    Path getPath() {
+        return fichero;
+    }
+
+    /**
+     * Anota una fila rechazada.
+     *
+     * @param tabla tabla de la fila.
+     * @param fila posición de la fila (empezando en 0).
+     * @param row valores de la fila.
+     * @param error error devuelto por la base de datos o al convertir los valores.
+     * @throws SQLException si se supera el máximo de errores o no se puede escribir el fichero.
+     */
+    void reject(String tabla, long fila, List<Object> row, Exception error) throws SQLException {
+        rechazadas++;
+        if (maxErrors > 0 && rechazadas > maxErrors) {
+            throw new SQLException("Se ha superado el máximo de " + maxErrors + " filas rechazadas (tabla "
+                + tabla + ", fila " + (fila + 1) + "): " + error.getMessage(), error);
+        }
+        try {
+            if (salida == null) {
+                if (fichero == null) {
+                    fichero = Files.createTempFile("rechazos", ".csv");
+                }
+                salida = Files.newBufferedWriter(fichero);
+                salida.write("tabla;fila;error;valores" + System.lineSeparator());
+            }
+            salida.write(tabla + ";" + (fila + 1) + ";" + csv(String.valueOf(error.getMessage())) + ";"
+                + csv(row.toString()) + System.lineSeparator());
+        } catch (IOException e) {
+            throw new SQLException("Error al escribir el fichero de filas rechazadas.", e);
+        }
+    }
+
+    private static String csv(String texto) {
+        return "\"" + texto.replace("\"", "\"\"").replace('\n', ' ').replace('\r', ' ') + "\"";
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (salida != null) {
+            salida.close();
+        }
+    }
+
+    /**
+     * Cierra y borra el fichero de rechazos, si se había creado, porque la
+     * importación se ha revertido.
+     */
+    void discard() {
+        if (salida == null) {
+            return;
+        }
+        try {
+            salida.close();
+            Files.deleteIfExists(fichero);
+        } catch (IOException e) {
+            System.err.println("No se pudo borrar el fichero de rechazos " + fichero + ": " + e.getMessage());
+        }
+    }
+}
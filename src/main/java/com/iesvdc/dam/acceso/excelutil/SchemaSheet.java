@@ -0,0 +1,237 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import com.iesvdc.dam.acceso.dialecto.Dialect;
+import com.iesvdc.dam.acceso.modelo.FieldModel;
+import com.iesvdc.dam.acceso.modelo.FieldType;
+
+/**
+ * Hoja oculta <code>_schema</code> con la definición de las tablas exportadas.
+ * <p>
+ * La escribe {@link com.iesvdc.dam.acceso.databaseutil.DatabaseReader} (salvo con
+ * <b>exportSchema=false</b>) con una fila por columna:
+ * <ul>
+ *   <li><b>tabla</b>, <b>columna</b>;</li>
+ *   <li><b>tipo</b>: el {@link FieldType} con el que se leen los valores;</li>
+ *   <li><b>tipo_sql</b>: el tipo exacto en el gestor de origen (<code>VARCHAR(100)</code>, <code>DECIMAL(10,2)</code>...);</li>
+ *   <li><b>tipo_jdbc</b>, <b>tamano</b>, <b>decimales</b>: el tipo de {@link Types}, para traducirlo a otro gestor;</li>
+ *   <li><b>nulo</b>: si admite nulos;</li>
+ *   <li><b>clave_primaria</b>: posición en la clave primaria o 0;</li>
+ *   <li><b>hojas</b>: hojas con los datos de la tabla, separadas por <code>/</code>
+ *       (carácter que no puede aparecer en el nombre de una hoja);</li>
+ *   <li><b>dialecto</b>: gestor de origen.</li>
+ * </ul>
+ * Al importar, {@link ExcelReader} crea las tablas de estas hojas con esta
+ * definición en lugar de deducir los tipos, y sus datos empiezan en la fila 1.
+ */
+public final class SchemaSheet {
+    /** Nombre de la hoja. */
+    public static final String NAME = "_schema";
+
+    private static final String[] CABECERA = {
+        "tabla", "columna", "tipo", "tipo_sql", "tipo_jdbc", "tamano", "decimales",
+        "nulo", "clave_primaria", "hojas", "dialecto"
+    };
+
+    /**
+     * Definición de una columna.
+     *
+     * @param table tabla.
+     * @param name columna.
+     * @param type tipo con el que se leen los valores.
+     * @param sqlType tipo exacto en el gestor de origen.
+     * @param jdbcType tipo de {@link Types}.
+     * @param size tamaño o precisión.
+     * @param decimals dígitos decimales.
+     * @param nullable si admite nulos.
+     * @param primaryKey posición en la clave primaria (empezando en 1) o 0.
+     * @param sheets hojas con los datos de la tabla.
+     * @param dialect nombre del gestor de origen ({@link Dialect#getName()}).
+     */
+    public record Column(String table, String name, FieldType type, String sqlType, int jdbcType, int size,
+            int decimals, boolean nullable, int primaryKey, List<String> sheets, String dialect) {
+
+        /**
+         * Campo del modelo para crear la columna en el gestor de destino: con el tipo
+         * exacto si es el mismo gestor de origen y con el equivalente de
+         * {@link Dialect#sqlType(int, int, int)} si es otro.
+         */
+        public FieldModel toField(Dialect destino) {
+            String tipo;
+            if (destino.getName().equalsIgnoreCase(dialect)) {
+                tipo = sqlType;
+            } else if (jdbcType == Types.BIGINT && type == FieldType.DECIMAL) {
+                // BIGINT UNSIGNED: los gestores sin enteros sin signo necesitan 20 dígitos.
+                tipo = destino.sqlType(Types.DECIMAL, 20, 0);
+            } else {
+                tipo = destino.sqlType(jdbcType, size, decimals);
+            }
+            return new FieldModel(name, type, tipo, nullable, primaryKey);
+        }
+    }
+
+    private SchemaSheet() {
+    }
+
+    /**
+     * Tipo con el que se escriben en el Excel los valores de una columna de tipo JDBC.
+     * Coincide con lo que hace la exportación al copiar cada valor.
+     *
+     * @param signed {@code false} para los enteros sin signo.
+     */
+    public static FieldType fieldType(int jdbcType, int size, boolean signed) {
+        return switch (jdbcType) {
+            case Types.BIT -> size > 1 ? FieldType.INTEGER : FieldType.BOOLEAN;
+            case Types.BOOLEAN -> FieldType.BOOLEAN;
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> FieldType.INTEGER;
+            // Un BIGINT UNSIGNED no cabe en un long, y en un double pierde dígitos.
+            case Types.BIGINT -> signed ? FieldType.INTEGER : FieldType.DECIMAL;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> FieldType.FLOAT;
+            case Types.DECIMAL, Types.NUMERIC -> FieldType.DECIMAL;
+            case Types.DATE -> FieldType.DATE;
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> FieldType.DATETIME;
+            default -> FieldType.VARCHAR;
+        };
+    }
+
+    /**
+     * Crea la hoja de esquema (oculta) al final del libro.
+     */
+    public static Sheet write(Workbook wb, List<Column> columnas) {
+        Sheet hoja = wb.createSheet(NAME);
+        Row cabecera = hoja.createRow(0);
+        for (int i = 0; i < CABECERA.length; i++) {
+            cabecera.createCell(i).setCellValue(CABECERA[i]);
+        }
+        int n = 1;
+        for (Column c : columnas) {
+            Row fila = hoja.createRow(n++);
+            fila.createCell(0).setCellValue(c.table());
+            fila.createCell(1).setCellValue(c.name());
+            fila.createCell(2).setCellValue(c.type().name());
+            fila.createCell(3).setCellValue(c.sqlType());
+            fila.createCell(4).setCellValue(c.jdbcType());
+            fila.createCell(5).setCellValue(c.size());
+            fila.createCell(6).setCellValue(c.decimals());
+            fila.createCell(7).setCellValue(c.nullable());
+            fila.createCell(8).setCellValue(c.primaryKey());
+            fila.createCell(9).setCellValue(String.join("/", c.sheets()));
+            fila.createCell(10).setCellValue(c.dialect());
+        }
+        wb.setSheetHidden(wb.getSheetIndex(hoja), true);
+        return hoja;
+    }
+
+    /**
+     * Lee la hoja de esquema del libro.
+     *
+     * @return las columnas agrupadas por tabla, en orden, o {@code null} si el libro no la
+     *         tiene o si no tiene el formato esperado (ver {@link #read(List)}).
+     */
+    public static Map<String, List<Column>> read(Workbook wb) {
+        Sheet hoja = wb.getSheet(NAME);
+        if (hoja == null) {
+            return null;
+        }
+        List<List<String>> filas = new ArrayList<>();
+        for (int i = 0; i <= hoja.getLastRowNum(); i++) {
+            Row fila = hoja.getRow(i);
+            List<String> textos = new ArrayList<>();
+            for (int j = 0; fila != null && j < fila.getLastCellNum(); j++) {
+                textos.add(texto(fila.getCell(j)));
+            }
+            filas.add(textos);
+        }
+        return read(filas);
+    }
+
+    /**
+     * Lee la hoja de esquema a partir del texto de sus celdas, fila a fila (como la
+     * entrega {@link StreamingWorkbook}).
+     *
+     * Una hoja del usuario que se llame igual pero no tenga el formato de la
+     * exportación no es un error: se avisa y se devuelve {@code null}, de modo que el
+     * libro se importa deduciendo los tipos y esa hoja como una tabla más.
+     *
+     * @param filas texto de las celdas de cada fila, empezando por la cabecera.
+     * @return las columnas agrupadas por tabla, o {@code null} si la hoja no tiene el formato esperado.
+     */
+    static Map<String, List<Column>> read(List<List<String>> filas) {
+        try {
+            return leer(filas);
+        } catch (IllegalArgumentException e) {
+            System.err.println("La hoja " + NAME + " no es un esquema de exportación (" + e.getMessage()
+                + "); se deducen los tipos de todas las hojas.");
+            return null;
+        }
+    }
+
+    private static Map<String, List<Column>> leer(List<List<String>> filas) {
+        List<String> cabecera = filas.isEmpty() ? List.of() : filas.get(0);
+        for (int i = 0; i < CABECERA.length; i++) {
+            if (!CABECERA[i].equals(celda(cabecera, i))) {
+                throw new IllegalArgumentException("falta la columna " + CABECERA[i]);
+            }
+        }
+
+        Map<String, List<Column>> tablas = new LinkedHashMap<>();
+        for (List<String> fila : filas.subList(Math.min(1, filas.size()), filas.size())) {
+            if (celda(fila, 0).isEmpty()) {
+                continue;
+            }
+            Column c = new Column(
+                celda(fila, 0),
+                celda(fila, 1),
+                FieldType.valueOf(celda(fila, 2)),
+                celda(fila, 3),
+                entero(celda(fila, 4)),
+                entero(celda(fila, 5)),
+                entero(celda(fila, 6)),
+                !"false".equalsIgnoreCase(celda(fila, 7)),
+                entero(celda(fila, 8)),
+                List.of(celda(fila, 9).split("/")),
+                celda(fila, 10));
+            tablas.computeIfAbsent(c.table(), t -> new ArrayList<>()).add(c);
+        }
+        return tablas;
+    }
+
+    private static String celda(List<String> fila, int j) {
+        return j < fila.size() && fila.get(j) != null ? fila.get(j) : "";
+    }
+
+    private static String texto(Cell celda) {
+        if (celda == null) {
+            return "";
+        }
+        return switch (celda.getCellType()) {
+            case STRING -> celda.getStringCellValue();
+            case NUMERIC -> Long.toString((long) celda.getNumericCellValue());
+            case BOOLEAN -> Boolean.toString(celda.getBooleanCellValue());
+            default -> celda.toString();
+        };
+    }
+
+    private static int entero(String valor) {
+        return valor.isEmpty() ? 0 : (int) Double.parseDouble(valor);
+    }
+
+    /**
+     * Indica si la fila de cabecera de una hoja coincide con las columnas del esquema.
+     *
+     * @param cabecera nombres de las columnas de la hoja.
+     */
+    static boolean sameHeader(List<String> cabecera, List<Column> columnas) {
+        return cabecera.equals(columnas.stream().map(Column::name).toList());
+    }
+}
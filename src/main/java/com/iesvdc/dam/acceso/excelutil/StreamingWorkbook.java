@@ -0,0 +1,277 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.xmlbeans.XmlException;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbookPr;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Lectura de un libro <code>.xlsx</code> en streaming con {@link XSSFReader}.
+ * <p>
+ * A diferencia de {@code XSSFWorkbook}, no carga las hojas en memoria: el XML de
+ * cada hoja se recorre con SAX y sus filas se entregan una a una. Solo se guardan
+ * en memoria los textos compartidos y los estilos del libro. Las fórmulas se leen
+ * con su último resultado guardado en el fichero; no se pueden evaluar.
+ */
+final class StreamingWorkbook implements AutoCloseable {
+
+    /**
+     * Recibe las filas de una hoja en orden.
+     */
+    interface RowHandler {
+        /**
+         * @param indice índice de la fila (empezando en 0).
+         * @param celdas celdas de la fila por columna; {@code null} donde no hay celda.
+         * @return {@code false} para dejar de leer la hoja.
+         */
+        boolean row(int indice, List<CellData> celdas);
+    }
+
+    /** Se lanza para cortar la lectura de una hoja cuando el receptor no quiere más filas. */
+    private static final class Parada extends SAXException {
+        Parada() {
+            super("Lectura detenida");
+        }
+    }
+
+    private final OPCPackage paquete;
+    private final XSSFReader lector;
+    private final ReadOnlySharedStringsTable textos;
+    private final StylesTable estilos;
+    private final boolean fecha1904;
+    private final List<String> hojas = new ArrayList<>();
+
+    /**
+     * Abre el libro y lee su lista de hojas, textos compartidos y estilos.
+     *
+     * @throws IOException si el fichero no existe o no es un libro <code>.xlsx</code>.
+     */
+    StreamingWorkbook(String fichero) throws IOException {
+        try {
+            paquete = OPCPackage.open(fichero, PackageAccess.READ);
+        } catch (OpenXML4JException | RuntimeException e) {
+            throw new IOException("No se puede abrir el libro " + fichero + ": " + e.getMessage(), e);
+        }
+        try {
+            lector = new XSSFReader(paquete);
+            textos = new ReadOnlySharedStringsTable(paquete);
+            estilos = lector.getStylesTable();
+            try (InputStream libro = lector.getWorkbookData()) {
+                CTWorkbookPr propiedades = WorkbookDocument.Factory.parse(libro).getWorkbook().getWorkbookPr();
+                fecha1904 = propiedades != null && propiedades.isSetDate1904() && propiedades.getDate1904();
+            }
+            XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) lector.getSheetsData();
+            while (it.hasNext()) {
+                try (InputStream hoja = it.next()) {
+                    hojas.add(it.getSheetName());
+                }
+            }
+        } catch (OpenXML4JException | SAXException | XmlException | RuntimeException e) {
+            paquete.revert();
+            throw new IOException("No se puede leer el libro " + fichero + ": " + e.getMessage(), e);
+        } catch (IOException e) {
+            paquete.revert();
+            throw e;
+        }
+    }
+
+    /** Nombres de las hojas, en el orden del libro. */
+    List<String> getSheetNames() {
+        return hojas;
+    }
+
+    /** Indica si las fechas del libro cuentan desde 1904 en lugar de 1900. */
+    boolean isDate1904() {
+        return fecha1904;
+    }
+
+    /**
+     * Recorre las filas de una hoja.
+     *
+     * @param nombre nombre de la hoja.
+     * @param receptor recibe las filas en orden, hasta el final o hasta que devuelva {@code false}.
+     * @throws IOException si no se puede leer la hoja.
+     */
+    void read(String nombre, RowHandler receptor) throws IOException {
+        try {
+            XSSFReader.SheetIterator hojasLibro = (XSSFReader.SheetIterator) lector.getSheetsData();
+            while (hojasLibro.hasNext()) {
+                try (InputStream xml = hojasLibro.next()) {
+                    if (!hojasLibro.getSheetName().equals(nombre)) {
+                        continue;
+                    }
+                    XMLReader sax = XMLHelper.newXMLReader();
+                    sax.setContentHandler(new Manejador(receptor));
+                    try {
+                        sax.parse(new InputSource(xml));
+                    } catch (Parada e) {
+                        // El receptor ya tiene todas las filas que quería.
+                    }
+                    return;
+                }
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException | RuntimeException e) {
+            throw new IOException("No se puede leer la hoja " + nombre + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        paquete.revert();
+    }
+
+    /**
+     * Convierte los elementos <code>&lt;row&gt;</code> y <code>&lt;c&gt;</code> del XML
+     * de una hoja en filas de {@link CellData}.
+     */
+    private final class Manejador extends DefaultHandler {
+        private final RowHandler receptor;
+        /** Formato numérico por índice de estilo: índice y cadena de formato. */
+        private final Map<Integer, CellData> formatos = new HashMap<>();
+
+        private int fila = -1;
+        private List<CellData> celdas;
+        private int columna;
+        private String tipo;
+        private int estilo;
+        private String valor;
+
+        private final StringBuilder texto = new StringBuilder();
+        private final StringBuilder enLinea = new StringBuilder();
+        private boolean capturando;
+        private boolean dentroDeIs;
+
+        Manejador(RowHandler receptor) {
+            this.receptor = receptor;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atributos) {
+            switch (localName) {
+                case "row" -> {
+                    String r = atributos.getValue("r");
+                    fila = r != null ? Integer.parseInt(r) - 1 : fila + 1;
+                    celdas = new ArrayList<>();
+                }
+                case "c" -> {
+                    String r = atributos.getValue("r");
+                    columna = r != null ? new CellReference(r).getCol() : celdas.size();
+                    tipo = atributos.getValue("t");
+                    String s = atributos.getValue("s");
+                    estilo = s != null ? Integer.parseInt(s) : 0;
+                    valor = null;
+                    enLinea.setLength(0);
+                }
+                case "v" -> {
+                    texto.setLength(0);
+                    capturando = true;
+                }
+                case "is" -> dentroDeIs = true;
+                case "t" -> {
+                    if (dentroDeIs) {
+                        texto.setLength(0);
+                        capturando = true;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (capturando) {
+                texto.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v" -> {
+                    valor = texto.toString();
+                    capturando = false;
+                }
+                case "t" -> {
+                    if (dentroDeIs) {
+                        enLinea.append(texto);
+                        capturando = false;
+                    }
+                }
+                case "is" -> dentroDeIs = false;
+                case "c" -> {
+                    while (celdas.size() < columna) {
+                        celdas.add(null);
+                    }
+                    celdas.add(celda());
+                }
+                case "row" -> {
+                    if (!receptor.row(fila, celdas)) {
+                        throw new Parada();
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        /**
+         * Celda leída según su tipo (<code>t</code>): texto compartido, texto en línea,
+         * resultado de texto de una fórmula, booleano, error o número.
+         */
+        private CellData celda() {
+            CellValue contenido;
+            if (tipo == null || tipo.equals("n")) {
+                if (valor == null || valor.isEmpty()) {
+                    return null;
+                }
+                CellData formato = formato();
+                return new CellData(new CellValue(Double.parseDouble(valor)), formato.formatIndex(),
+                    formato.formatString());
+            }
+            switch (tipo) {
+                case "s" -> contenido = valor == null ? null
+                    : new CellValue(textos.getItemAt(Integer.parseInt(valor.trim())).getString());
+                case "inlineStr" -> contenido = new CellValue(enLinea.toString());
+                case "str", "d" -> contenido = valor == null ? null : new CellValue(valor);
+                case "b" -> contenido = valor == null ? null : CellValue.valueOf("1".equals(valor.trim()));
+                default -> contenido = null;
+            }
+            return contenido == null ? null : new CellData(contenido, (short) 0, null);
+        }
+
+        private CellData formato() {
+            return formatos.computeIfAbsent(estilo, i -> {
+                XSSFCellStyle cellStyle = estilos == null || i >= estilos.getNumCellStyles()
+                    ? null
+                    : estilos.getStyleAt(i);
+                return cellStyle == null
+                    ? new CellData(null, (short) 0, null)
+                    : new CellData(null, cellStyle.getDataFormat(), cellStyle.getDataFormatString());
+            });
+        }
+    }
+}
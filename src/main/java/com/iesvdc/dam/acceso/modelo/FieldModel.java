@@ -8,22 +8,39 @@ import java.util.Objects;
 public class FieldModel {
     private final String name;
     private final FieldType type;
+    /** Tipo SQL exacto de la columna, o {@code null} para deducirlo de {@link #type}. */
+    private final String sqlType;
+    private final boolean nullable;
+    /** Posición en la clave primaria (empezando en 1), o 0 si no forma parte de ella. */
+    private final int primaryKey;
 
 
 
     public FieldModel() {
-        this.name = "";
-        this.type = FieldType.UNKNOWN;
+        this("", FieldType.UNKNOWN);
     }
 
     public FieldModel(String name) {
-        this.name = name;
-        this.type = FieldType.UNKNOWN;
+        this(name, FieldType.UNKNOWN);
     }
     
     public FieldModel(String name, FieldType type) {
+        this(name, type, null, true, 0);
+    }
+
+    /**
+     * Campo con la definición exacta de la columna (la de la hoja de esquema de una exportación).
+     *
+     * @param sqlType tipo SQL completo, por ejemplo <code>VARCHAR(100)</code>.
+     * @param nullable si admite nulos.
+     * @param primaryKey posición en la clave primaria (empezando en 1) o 0.
+     */
+    public FieldModel(String name, FieldType type, String sqlType, boolean nullable, int primaryKey) {
         this.name = name;
         this.type = type;
+        this.sqlType = sqlType;
+        this.nullable = nullable;
+        this.primaryKey = primaryKey;
     }
 
     public String getName() {
@@ -35,6 +52,18 @@ public class FieldModel {
         return this.type;
     }
 
+    public String getSqlType() {
+        return this.sqlType;
+    }
+
+    public boolean isNullable() {
+        return this.nullable;
+    }
+
+    public int getPrimaryKey() {
+        return this.primaryKey;
+    }
+
 
     @Override
     public boolean equals(Object o) {
@@ -44,7 +73,9 @@ public class FieldModel {
             return false;
         }
         FieldModel fieldModel = (FieldModel) o;
-        return Objects.equals(name, fieldModel.name) && Objects.equals(type, fieldModel.type);
+        return Objects.equals(name, fieldModel.name) && Objects.equals(type, fieldModel.type)
+            && Objects.equals(sqlType, fieldModel.sqlType) && nullable == fieldModel.nullable
+            && primaryKey == fieldModel.primaryKey;
     }
 
 
@@ -53,6 +84,7 @@ public class FieldModel {
         return "{" +
             " name='" + getName() + "'" +
             ", type='" + getType() + "'" +
+            (sqlType != null ? ", sqlType='" + getSqlType() + "'" : "") +
             "}";
     }
     
@@ -6,29 +6,39 @@ package com.iesvdc.dam.acceso.modelo;
 public enum FieldType {
     INTEGER,
     FLOAT,
+    /**
+     * Número decimal exacto ({@link java.math.BigDecimal}); solo lo asigna la hoja de
+     * esquema de una exportación, para los DECIMAL y los BIGINT sin signo.
+     */
+    DECIMAL,
     VARCHAR,
     DATE,
+    /** Fecha con hora; solo la asigna la hoja de esquema de una exportación. */
+    DATETIME,
     BOOLEAN,
     UNKNOWN;
 
     /**
      * Determina si el tipo representa un valor numérico.
-     * @return true si es INTEGER o FLOAT.
+     * @return true si es INTEGER, FLOAT o DECIMAL.
      */
     public boolean isNumeric() {
-        return this == INTEGER || this == FLOAT;
+        return this == INTEGER || this == FLOAT || this == DECIMAL;
     }
 
     /**
-     * Convierte el tipo en un tipo SQL estándar.
+     * Convierte el tipo en un tipo SQL de MySQL.
+     * Para otros gestores, ver {@link com.iesvdc.dam.acceso.dialecto.Dialect#sqlType(FieldType)}.
      * @return Cadena con el tipo compatible con MySQL.
      */
     public String toSqlType() {
         return switch (this) {
             case INTEGER -> "INT";
             case FLOAT -> "DOUBLE";
+            case DECIMAL -> "DECIMAL(65,30)";
             case VARCHAR -> "VARCHAR(255)";
             case DATE -> "DATE";
+            case DATETIME -> "DATETIME";
             case BOOLEAN -> "BOOLEAN";
             default -> "VARCHAR(255)";
         };
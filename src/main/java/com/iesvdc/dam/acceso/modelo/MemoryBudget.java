@@ -0,0 +1,69 @@
+package com.iesvdc.dam.acceso.modelo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Presupuesto de memoria compartido por varios {@link RowBuffer}.
+ * <p>
+ * Cada buffer reserva del presupuesto lo que estima que ocupan sus filas en el
+ * heap y lo devuelve al cerrarse. Cuando no queda presupuesto, el buffer que lo
+ * pide pasa sus filas a disco. Así el límite vale para todas las tablas de una
+ * importación (o de varias) y no para cada tabla por separado.
+ * <p>
+ * Es seguro usarlo desde varios hilos.
+ */
+public class MemoryBudget {
+    /** Presupuesto sin límite: las filas nunca pasan a disco. */
+    public static final MemoryBudget UNLIMITED = new MemoryBudget(Long.MAX_VALUE);
+
+    /**
+     * Límite por defecto: una cuarta parte del heap máximo (<code>-Xmx</code>), para que
+     * las filas no lleguen a agotarlo aunque se lean varios libros a la vez.
+     */
+    public static long defaultLimit() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    private final long limit;
+    private final AtomicLong usados = new AtomicLong();
+
+    /**
+     * @param limit bytes estimados que pueden ocupar las filas en el heap.
+     */
+    public MemoryBudget(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Reserva bytes del presupuesto si quedan.
+     *
+     * @return {@code true} si se han reservado; {@code false} si no caben.
+     */
+    public boolean reserve(long bytes) {
+        while (true) {
+            long actual = usados.get();
+            if (limit - actual < bytes) {
+                return false;
+            }
+            if (usados.compareAndSet(actual, actual + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Devuelve al presupuesto bytes reservados antes con {@link #reserve(long)}.
+     */
+    public void release(long bytes) {
+        usados.addAndGet(-bytes);
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    /** Bytes reservados en este momento. */
+    public long getUsed() {
+        return usados.get();
+    }
+}
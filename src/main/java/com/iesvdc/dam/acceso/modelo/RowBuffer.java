@@ -0,0 +1,356 @@
+package com.iesvdc.dam.acceso.modelo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lista de filas con un presupuesto de memoria.
+ * <p>
+ * Mientras el tamaño estimado de las filas cabe en el presupuesto se guardan
+ * en el heap. El presupuesto ({@link MemoryBudget}) puede ser compartido por
+ * varios buffers, y lo reservado vuelve a él en {@link #close()}. A partir de ahí las filas nuevas se escriben en un fichero temporal
+ * con un formato binario compacto y se leen de vuelta, en orden, a través de un
+ * {@link MappedByteBuffer} ({@link FileChannel#map}), sin copiar el fichero a
+ * buffers intermedios. El recorrido siempre devuelve las filas en el orden en
+ * que se añadieron.
+ * <p>
+ * Formato de cada fila: un <code>int</code> con el número de valores y, por cada
+ * valor, un byte de tipo seguido de su contenido (<code>long</code>,
+ * <code>double</code>, milisegundos de una fecha (con o sin hora) o texto UTF-8 precedido de su
+ * longitud, que es también la forma de guardar un {@link BigDecimal}).
+ */
+public class RowBuffer implements Iterable<List<Object>>, AutoCloseable {
+    private static final byte NULO = 0;
+    private static final byte ENTERO = 1;
+    private static final byte DECIMAL = 2;
+    private static final byte VERDADERO = 3;
+    private static final byte FALSO = 4;
+    private static final byte TEXTO = 5;
+    private static final byte FECHA = 6;
+    private static final byte FECHA_HORA = 7;
+    private static final byte EXACTO = 8;
+
+    /** Tamaño de la ventana que se proyecta en memoria al leer el fichero. */
+    private static final int VENTANA = 64 * 1024 * 1024;
+
+    private final MemoryBudget presupuesto;
+    private final Path tempDir;
+    private final List<List<Object>> enMemoria = new ArrayList<>();
+    private long bytesEnMemoria;
+
+    private Path fichero;
+    private DataOutputStream salida;
+    private long filasEnDisco;
+    /** Canales de recorridos que no han llegado al final; se cierran en {@link #close()}. */
+    private final List<FileChannel> canales = new ArrayList<>();
+
+    /**
+     * Crea un buffer que nunca pasa a disco.
+     */
+    public RowBuffer() {
+        this(MemoryBudget.UNLIMITED, null);
+    }
+
+    /**
+     * @param heapBudget bytes estimados que pueden ocupar las filas en el heap.
+     * @param tempDir directorio para el fichero temporal; {@code null} para el del sistema.
+     */
+    public RowBuffer(long heapBudget, Path tempDir) {
+        this(new MemoryBudget(heapBudget), tempDir);
+    }
+
+    /**
+     * @param presupuesto presupuesto de heap, quizá compartido con otros buffers.
+     * @param tempDir directorio para el fichero temporal; {@code null} para el del sistema.
+     */
+    public RowBuffer(MemoryBudget presupuesto, Path tempDir) {
+        this.presupuesto = presupuesto;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * Añade una fila al final del buffer.
+     *
+     * @throws UncheckedIOException si no se puede escribir el fichero temporal.
+     */
+    public boolean add(List<Object> row) {
+        if (salida == null) {
+            long estimado = estimar(row);
+            if (presupuesto.reserve(estimado)) {
+                bytesEnMemoria += estimado;
+                return enMemoria.add(row);
+            }
+        }
+        try {
+            escribir(row);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error al escribir filas en el fichero temporal.", e);
+        }
+        filasEnDisco++;
+        return true;
+    }
+
+    /** Número total de filas (en memoria y en disco). */
+    public long size() {
+        return enMemoria.size() + filasEnDisco;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Indica si alguna fila se ha guardado en disco. */
+    public boolean isSpilled() {
+        return salida != null;
+    }
+
+    /**
+     * Recorre las filas en orden. Se puede recorrer tantas veces como se quiera,
+     * pero no se deben añadir filas durante un recorrido.
+     */
+    @Override
+    public Iterator<List<Object>> iterator() {
+        Iterator<List<Object>> memoria = enMemoria.iterator();
+        if (salida == null) {
+            return memoria;
+        }
+        try {
+            salida.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error al escribir filas en el fichero temporal.", e);
+        }
+        LectorDisco disco = new LectorDisco(filasEnDisco);
+        return new Iterator<List<Object>>() {
+            @Override
+            public boolean hasNext() {
+                return memoria.hasNext() || disco.hasNext();
+            }
+
+            @Override
+            public List<Object> next() {
+                return memoria.hasNext() ? memoria.next() : disco.next();
+            }
+        };
+    }
+
+    /**
+     * Devuelve al presupuesto lo reservado y cierra y borra el fichero temporal, si lo hay.
+     */
+    @Override
+    public void close() {
+        presupuesto.release(bytesEnMemoria);
+        bytesEnMemoria = 0;
+        if (salida == null) {
+            return;
+        }
+        try {
+            for (FileChannel canal : canales) {
+                canal.close();
+            }
+            canales.clear();
+            salida.close();
+            Files.deleteIfExists(fichero);
+        } catch (IOException e) {
+            fichero.toFile().deleteOnExit();
+        }
+    }
+
+    private void escribir(List<Object> row) throws IOException {
+        if (salida == null) {
+            fichero = tempDir == null
+                ? Files.createTempFile("filas", ".bin")
+                : Files.createTempFile(tempDir, "filas", ".bin");
+            fichero.toFile().deleteOnExit();
+            salida = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(fichero), 64 * 1024));
+        }
+
+        salida.writeInt(row.size());
+        for (Object valor : row) {
+            if (valor == null) {
+                salida.writeByte(NULO);
+            } else if (valor instanceof Long || valor instanceof Integer) {
+                salida.writeByte(ENTERO);
+                salida.writeLong(((Number) valor).longValue());
+            } else if (valor instanceof BigDecimal exacto) {
+                byte[] texto = exacto.toString().getBytes(StandardCharsets.UTF_8);
+                salida.writeByte(EXACTO);
+                salida.writeInt(texto.length);
+                salida.write(texto);
+            } else if (valor instanceof Number number) {
+                salida.writeByte(DECIMAL);
+                salida.writeDouble(number.doubleValue());
+            } else if (valor instanceof Boolean bool) {
+                salida.writeByte(bool ? VERDADERO : FALSO);
+            } else if (valor instanceof java.sql.Date fecha) {
+                salida.writeByte(FECHA);
+                salida.writeLong(fecha.getTime());
+            } else if (valor instanceof java.sql.Timestamp marca) {
+                salida.writeByte(FECHA_HORA);
+                salida.writeLong(marca.getTime());
+            } else {
+                byte[] texto = valor.toString().getBytes(StandardCharsets.UTF_8);
+                salida.writeByte(TEXTO);
+                salida.writeInt(texto.length);
+                salida.write(texto);
+            }
+        }
+    }
+
+    /**
+     * Estimación aproximada de lo que ocupa una fila en el heap.
+     */
+    private static long estimar(List<Object> row) {
+        long bytes = 40 + 4L * row.size();
+        for (Object valor : row) {
+            if (valor instanceof String texto) {
+                bytes += 40 + texto.length();
+            } else if (valor != null) {
+                bytes += 24;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Lee las filas del fichero temporal por ventanas proyectadas en memoria.
+     * Si una fila queda cortada al final de la ventana, se vuelve a proyectar
+     * empezando en esa fila.
+     */
+    private class LectorDisco implements Iterator<List<Object>> {
+        private final long total;
+        private long leidas;
+        private FileChannel canal;
+        private MappedByteBuffer ventana;
+        private long inicioVentana;
+        private int tamanoVentana = VENTANA;
+
+        LectorDisco(long total) {
+            this.total = total;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leidas < total;
+        }
+
+        @Override
+        public List<Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                if (canal == null) {
+                    canal = FileChannel.open(fichero, StandardOpenOption.READ);
+                    canales.add(canal);
+                    proyectar(0);
+                }
+                List<Object> fila;
+                while (true) {
+                    int inicioFila = ventana.position();
+                    try {
+                        fila = leerFila();
+                        break;
+                    } catch (BufferUnderflowException e) {
+                        long desde = inicioVentana + inicioFila;
+                        if (inicioFila == 0) {
+                            // La fila no cabe en una ventana entera: la agrandamos.
+                            tamanoVentana = (int) Math.min(Integer.MAX_VALUE, 2L * tamanoVentana);
+                        }
+                        proyectar(desde);
+                    }
+                }
+                if (++leidas == total) {
+                    canales.remove(canal);
+                    canal.close();
+                }
+                return fila;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error al leer filas del fichero temporal.", e);
+            }
+        }
+
+        private void proyectar(long desde) throws IOException {
+            long tamano = Math.min(tamanoVentana, canal.size() - desde);
+            ventana = canal.map(FileChannel.MapMode.READ_ONLY, desde, tamano);
+            inicioVentana = desde;
+        }
+
+        private List<Object> leerFila() {
+            int n = ventana.getInt();
+            List<Object> fila = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                byte tipo = ventana.get();
+                switch (tipo) {
+                    case NULO -> fila.add(null);
+                    case ENTERO -> fila.add(ventana.getLong());
+                    case DECIMAL -> fila.add(ventana.getDouble());
+                    case VERDADERO -> fila.add(Boolean.TRUE);
+                    case FALSO -> fila.add(Boolean.FALSE);
+                    case FECHA -> fila.add(new java.sql.Date(ventana.getLong()));
+                    case FECHA_HORA -> fila.add(new java.sql.Timestamp(ventana.getLong()));
+                    case TEXTO -> fila.add(leerTexto());
+                    case EXACTO -> fila.add(new BigDecimal(leerTexto()));
+                    default -> throw new IllegalStateException("Tipo desconocido en el fichero de filas: " + tipo);
+                }
+            }
+            return fila;
+        }
+
+        private String leerTexto() {
+            int longitud = ventana.getInt();
+            if (longitud > ventana.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            byte[] texto = new byte[longitud];
+            ventana.get(texto);
+            return new String(texto, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof RowBuffer)) {
+            return false;
+        }
+        RowBuffer rowBuffer = (RowBuffer) o;
+        if (size() != rowBuffer.size()) {
+            return false;
+        }
+        Iterator<List<Object>> otras = rowBuffer.iterator();
+        for (List<Object> fila : this) {
+            if (!fila.equals(otras.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(size());
+    }
+
+    @Override
+    public String toString() {
+        if (isSpilled()) {
+            return "[" + size() + " filas, " + filasEnDisco + " en disco]";
+        }
+        return enMemoria.toString();
+    }
+}
@@ -6,20 +6,32 @@ import java.util.Objects;
 
 /**
  * El modelo que almacena información de una tabla y su lista de campos.
+ * Las filas se guardan en un {@link RowBuffer}, que puede pasar a disco
+ * cuando superan su presupuesto de memoria.
  */
-public class TableModel {
+public class TableModel implements AutoCloseable {
     private final String name;
     private final List<FieldModel> fields = new ArrayList<>();
-    private final List<List<Object>> rows = new ArrayList<>();
+    private final RowBuffer rows;
 
 
 
     public TableModel() {
-        this.name = "";
+        this("");
     }
 
     public TableModel(String name) {
         this.name = name;
+        this.rows = new RowBuffer();
+    }
+
+    /**
+     * @param name nombre de la tabla.
+     * @param rows buffer donde se guardarán las filas.
+     */
+    public TableModel(String name, RowBuffer rows) {
+        this.name = name;
+        this.rows = rows;
     }
 
     public String getName() {
@@ -38,10 +50,18 @@ public class TableModel {
         return rows.add(row);
     }
 
-    public List<List<Object>> getRows() {
+    public RowBuffer getRows() {
         return this.rows;
     }
 
+    /**
+     * Libera el fichero temporal de las filas, si lo hay.
+     */
+    @Override
+    public void close() {
+        rows.close();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == this)
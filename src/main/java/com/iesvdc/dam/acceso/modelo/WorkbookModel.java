@@ -8,7 +8,7 @@ import java.util.Objects;
 /**
  * El modelo que almacena el libro o lista de tablas.
  */
-public class WorkbookModel {
+public class WorkbookModel implements AutoCloseable {
     private List<TableModel> tables = new ArrayList<TableModel>();
 
 
@@ -28,6 +28,16 @@ public class WorkbookModel {
         return this.tables;
     }
 
+    /**
+     * Libera los ficheros temporales de todas las tablas.
+     */
+    @Override
+    public void close() {
+        for (TableModel table : tables) {
+            table.close();
+        }
+    }
+
 
     @Override
     public boolean equals(Object o) {
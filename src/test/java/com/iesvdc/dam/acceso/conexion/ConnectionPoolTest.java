@@ -0,0 +1,68 @@
+package com.iesvdc.dam.acceso.conexion;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.junit.Test;
+
+/**
+ * Préstamo y devolución de conexiones, también cuando no se pueden abrir.
+ */
+public class ConnectionPoolTest {
+
+    private static Properties h2(String database) {
+        Properties props = new Properties();
+        props.setProperty("driver", "H2");
+        props.setProperty("database", database);
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+        return props;
+    }
+
+    @Test
+    public void reutilizaLasConexionesDevueltas() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(h2("mem:pool"), 1)) {
+            Connection primera = pool.borrow();
+            primera.setAutoCommit(false);
+            pool.release(primera);
+
+            Connection segunda = pool.borrow();
+            assertSame(primera, segunda);
+            assertFalse(segunda.isClosed());
+            pool.release(segunda);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void lasConexionesFallidasNoAgotanElPool() {
+        // Con un permiso perdido por intento, el segundo intento se quedaría esperando.
+        try (ConnectionPool pool = new ConnectionPool(h2("mem:pool;OPCION_QUE_NO_EXISTE=1"), 1)) {
+            for (int i = 0; i < 3; i++) {
+                try {
+                    pool.borrow();
+                    fail("La conexión no debería abrirse");
+                } catch (SQLException e) {
+                    // Esperado: H2 rechaza la opción.
+                }
+            }
+        }
+
+        Properties sinDriver = h2("mem:pool");
+        sinDriver.setProperty("driver", "desconocido");
+        try (ConnectionPool pool = new ConnectionPool(sinDriver, 1)) {
+            for (int i = 0; i < 3; i++) {
+                try {
+                    pool.borrow();
+                    fail("El driver no existe");
+                } catch (IllegalArgumentException | SQLException e) {
+                    // Esperado: el dialecto no está soportado.
+                }
+            }
+        }
+    }
+}
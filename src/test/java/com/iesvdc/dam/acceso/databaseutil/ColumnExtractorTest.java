@@ -0,0 +1,104 @@
+package com.iesvdc.dam.acceso.databaseutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+/**
+ * Copia de columnas a celdas: lo que no cabe en una celda numérica va como texto.
+ */
+public class ColumnExtractorTest {
+
+    private Row copiar(String tipoSql, String valor) throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:extractor", "sa", "");
+            Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE t (c " + tipoSql + ")");
+            st.execute("INSERT INTO t VALUES (" + valor + ")");
+            try (ResultSet rs = st.executeQuery("SELECT c FROM t")) {
+                XSSFWorkbook wb = new XSSFWorkbook();
+                ColumnExtractor[] extractores = ColumnExtractor.forColumns(rs.getMetaData(),
+                    ColumnExtractor.Styles.create(wb));
+                rs.next();
+                Row fila = wb.createSheet("t").createRow(0);
+                extractores[0].copy(rs, 1, fila);
+                st.execute("DROP TABLE t");
+                return fila;
+            }
+        }
+    }
+
+    @Test
+    public void decimalConPocosDigitosEsNumero() throws Exception {
+        Row fila = copiar("DECIMAL(10,2)", "12.50");
+        assertEquals(CellType.NUMERIC, fila.getCell(0).getCellType());
+        assertEquals(12.5, fila.getCell(0).getNumericCellValue(), 0);
+    }
+
+    @Test
+    public void decimalConMuchosDigitosEsTextoExacto() throws Exception {
+        Row fila = copiar("DECIMAL(30,10)", "12345678901234567890.0123456789");
+        assertEquals(CellType.STRING, fila.getCell(0).getCellType());
+        assertEquals("12345678901234567890.0123456789", fila.getCell(0).getStringCellValue());
+    }
+
+    @Test
+    public void bigintGrandeEsTextoExacto() throws Exception {
+        Row fila = copiar("BIGINT", Long.toString(Long.MAX_VALUE));
+        assertEquals(CellType.STRING, fila.getCell(0).getCellType());
+        assertEquals(Long.toString(Long.MAX_VALUE), fila.getCell(0).getStringCellValue());
+
+        fila = copiar("BIGINT", Long.toString(1L << 53));
+        assertEquals(CellType.NUMERIC, fila.getCell(0).getCellType());
+        assertEquals((double) (1L << 53), fila.getCell(0).getNumericCellValue(), 0);
+    }
+
+    @Test
+    public void bigintGrandeEnLaLecturaEnParalelo() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:extractor", "sa", "");
+            Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE t (c BIGINT)");
+            st.execute("INSERT INTO t VALUES (" + Long.MIN_VALUE + ")");
+            try (ResultSet rs = st.executeQuery("SELECT c FROM t")) {
+                XSSFWorkbook wb = new XSSFWorkbook();
+                ColumnExtractor[] extractores = ColumnExtractor.forColumns(rs.getMetaData(),
+                    ColumnExtractor.Styles.create(wb));
+                rs.next();
+                Row fila = wb.createSheet("t").createRow(0);
+                extractores[0].write(fila, 0, extractores[0].read(rs, 1));
+                assertEquals(Long.toString(Long.MIN_VALUE), fila.getCell(0).getStringCellValue());
+            } finally {
+                st.execute("DROP TABLE t");
+            }
+        }
+    }
+
+    @Test
+    public void fechaAnteriorA1900EsTextoIso() throws Exception {
+        Row fila = copiar("DATE", "DATE '1850-03-04'");
+        assertEquals(CellType.STRING, fila.getCell(0).getCellType());
+        assertEquals("1850-03-04", fila.getCell(0).getStringCellValue());
+    }
+
+    @Test
+    public void fechaHoraAnteriorA1900EsTextoIso() throws Exception {
+        Row fila = copiar("TIMESTAMP", "TIMESTAMP '1899-12-31 23:59:58'");
+        assertEquals("1899-12-31 23:59:58", fila.getCell(0).getStringCellValue());
+    }
+
+    @Test
+    public void fechaModernaEsFechaDeExcel() throws Exception {
+        Row fila = copiar("DATE", "DATE '2024-01-02'");
+        assertEquals(CellType.NUMERIC, fila.getCell(0).getCellType());
+        assertTrue(DateUtil.isCellDateFormatted(fila.getCell(0)));
+    }
+}
@@ -0,0 +1,23 @@
+package com.iesvdc.dam.acceso.databaseutil;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Types;
+
+import org.junit.Test;
+
+/**
+ * Tipo exacto de las columnas que se guarda en la hoja de esquema.
+ */
+public class DatabaseReaderTest {
+
+    @Test
+    public void laPrecisionVaDetrasDelTipoYAntesDeLosModificadores() {
+        assertEquals("DECIMAL(10,2)", DatabaseReader.exactType("DECIMAL", Types.DECIMAL, 10, 2));
+        // TYPE_NAME de una columna DECIMAL(10,2) UNSIGNED en MySQL.
+        assertEquals("DECIMAL(10,2) UNSIGNED", DatabaseReader.exactType("DECIMAL UNSIGNED", Types.DECIMAL, 10, 2));
+        assertEquals("INT UNSIGNED", DatabaseReader.exactType("INT UNSIGNED", Types.INTEGER, 10, 0));
+        assertEquals("CHARACTER VARYING(20)", DatabaseReader.exactType("CHARACTER VARYING", Types.VARCHAR, 20, 0));
+        assertEquals("DECIMAL(8,3)", DatabaseReader.exactType("DECIMAL(8,3)", Types.DECIMAL, 8, 3));
+    }
+}
@@ -0,0 +1,179 @@
+package com.iesvdc.dam.acceso.databaseutil;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+/**
+ * Marcas de cambio de la exportación incremental en un gestor sin marca propia (H2)
+ * y reutilización de las hojas sin cambios.
+ */
+public class ExportCacheTest {
+
+    private static String marca(Properties props) throws Exception {
+        Path dir = Files.createTempDirectory("cache");
+        props.setProperty("driver", "H2");
+        props.setProperty("exportCacheDir", dir.toString());
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:cache", "sa", "");
+            Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE t (id INT)");
+            st.execute("INSERT INTO t VALUES (1), (5)");
+            String antes = ExportCache.open(props, "h").marker(conn, "T");
+            st.execute("INSERT INTO t VALUES (7)");
+            String despues = ExportCache.open(props, "h").marker(conn, "T");
+            st.execute("DROP TABLE t");
+            if (antes != null) {
+                assertNotEquals(antes, despues);
+            }
+            return antes;
+        } finally {
+            Files.deleteIfExists(dir.resolve("index.properties"));
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void sinMarcaDelGestorNiColumnaSeExportaSiempre() throws Exception {
+        assertNull(marca(new Properties()));
+    }
+
+    @Test
+    public void sinMarcaDelGestorSeUsaLaColumnaDeMarcaDeAgua() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("exportWatermarkColumn", "ID");
+        assertEquals("watermark:5/2", marca(props));
+    }
+
+    @Test
+    public void marcaDeAguaPedidaExplicitamente() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("exportChangeMarker", "watermark");
+        props.setProperty("exportWatermarkColumn.T", "ID");
+        assertEquals("watermark:5/2", marca(props));
+    }
+
+    private static byte[] parte(Path libro, String nombre) throws IOException {
+        try (ZipFile zip = new ZipFile(libro.toFile());
+            InputStream is = zip.getInputStream(zip.getEntry(nombre))) {
+            return is.readAllBytes();
+        }
+    }
+
+    private static void borrar(Path dir) throws IOException {
+        try (Stream<Path> rutas = Files.walk(dir)) {
+            for (Path ruta : rutas.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(ruta);
+            }
+        }
+    }
+
+    /** Exporta con {@link DatabaseReader} y devuelve lo que escribe en la salida estándar. */
+    private static String exportar(Properties props, Path salida) throws Exception {
+        PrintStream original = System.out;
+        ByteArrayOutputStream texto = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(texto, true, StandardCharsets.UTF_8));
+        try {
+            new DatabaseReader(props).export(salida.toString());
+        } finally {
+            System.setOut(original);
+        }
+        return texto.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void reutilizaLasHojasSinCambiosByteAByte() throws Exception {
+        Path dir = Files.createTempDirectory("incremental");
+        Properties props = new Properties();
+        props.setProperty("driver", "H2");
+        props.setProperty("database", "mem:incremental");
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+        props.setProperty("exportCacheDir", dir.resolve("cache").toString());
+        props.setProperty("exportChangeMarker", "watermark");
+        props.setProperty("exportWatermarkColumn", "ID");
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:incremental", "sa", "");
+            Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE clientes (id INT PRIMARY KEY, nombre VARCHAR(20))");
+            st.execute("CREATE TABLE pedidos (id INT PRIMARY KEY, importe DECIMAL(10,2))");
+            st.execute("INSERT INTO clientes VALUES (1, 'Ana'), (2, 'Luis')");
+            st.execute("INSERT INTO pedidos VALUES (1, 10.50)");
+
+            Path primera = dir.resolve("primera.xlsx");
+            exportar(props, primera);
+            st.execute("INSERT INTO pedidos VALUES (2, 20.25)");
+            Path segunda = dir.resolve("segunda.xlsx");
+            String salida = exportar(props, segunda);
+
+            assertEquals("Hojas reutilizadas de la caché: 1, exportadas de nuevo: 1", salida.trim());
+            // clientes es la primera hoja; pedidos, la segunda.
+            assertArrayEquals(parte(primera, "xl/worksheets/sheet1.xml"), parte(segunda, "xl/worksheets/sheet1.xml"));
+            assertFalse(Arrays.equals(parte(primera, "xl/worksheets/sheet2.xml"),
+                parte(segunda, "xl/worksheets/sheet2.xml")));
+
+            try (XSSFWorkbook wb = new XSSFWorkbook(segunda.toFile())) {
+                assertEquals("Luis", wb.getSheet("CLIENTES").getRow(2).getCell(1).getStringCellValue());
+                assertEquals(2, wb.getSheet("PEDIDOS").getLastRowNum());
+                assertEquals(20.25, wb.getSheet("PEDIDOS").getRow(2).getCell(1).getNumericCellValue(), 0);
+            }
+            st.execute("DROP ALL OBJECTS");
+        } finally {
+            borrar(dir);
+        }
+    }
+
+    @Test
+    public void unFalloAlEscribirNoTocaElFicheroAnterior() throws Exception {
+        Path dir = Files.createTempDirectory("paquete");
+        try {
+            Path generado = dir.resolve("generado.xlsx");
+            try (XSSFWorkbook wb = new XSSFWorkbook()) {
+                wb.createSheet("datos").createRow(0).createCell(0).setCellValue("nuevo");
+                try (var fos = Files.newOutputStream(generado)) {
+                    wb.write(fos);
+                }
+            }
+            Path salida = dir.resolve("salida.xlsx");
+            Files.writeString(salida, "libro anterior");
+            Path parte = dir.resolve("parte.xml");
+
+            try {
+                // La parte de caché no existe: la copia falla a mitad del paquete.
+                ExportCache.writePackage(generado, salida,
+                    Map.of("xl/worksheets/sheet1.xml", dir.resolve("no_existe.xml")),
+                    Map.of("xl/workbook.xml", parte));
+                fail("Debería fallar al copiar la parte que no existe");
+            } catch (IOException e) {
+                // Esperado.
+            }
+            assertEquals("libro anterior", Files.readString(salida));
+            try (Stream<Path> ficheros = Files.list(dir)) {
+                assertEquals(2, ficheros.count()); // generado.xlsx y salida.xlsx, sin temporales
+            }
+        } finally {
+            borrar(dir);
+        }
+    }
+}
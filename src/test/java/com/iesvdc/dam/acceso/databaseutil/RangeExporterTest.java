@@ -0,0 +1,155 @@
+package com.iesvdc.dam.acceso.databaseutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.iesvdc.dam.acceso.conexion.ConnectionPool;
+import com.iesvdc.dam.acceso.dialecto.Dialect;
+
+/**
+ * Elección de la columna de corte, reparto en rangos y lectura en paralelo.
+ */
+public class RangeExporterTest {
+
+    private static final Dialect H2 = Dialect.forName("H2");
+
+    private Connection conn;
+
+    @Before
+    public void abrir() throws Exception {
+        // Mantiene viva la base de datos en memoria durante la prueba.
+        conn = DriverManager.getConnection("jdbc:h2:mem:rangos", "sa", "");
+    }
+
+    @After
+    public void cerrar() throws Exception {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP ALL OBJECTS");
+        }
+        conn.close();
+    }
+
+    private void ejecutar(String... sentencias) throws Exception {
+        try (Statement st = conn.createStatement()) {
+            for (String sql : sentencias) {
+                st.execute(sql);
+            }
+        }
+    }
+
+    private RangeExporter.Column columna(String tabla) throws Exception {
+        return RangeExporter.findColumn(conn.getMetaData(), conn.getCatalog(), tabla);
+    }
+
+    /** Lee la tabla entera con {@link RangeExporter} y devuelve la primera columna de cada fila. */
+    private List<Object> exportar(String tabla, int pageSize) throws Exception {
+        Properties props = new Properties();
+        props.setProperty("driver", "H2");
+        props.setProperty("database", "mem:rangos");
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+        try (ConnectionPool pool = new ConnectionPool(props, 2);
+            Statement st = conn.createStatement();
+            ResultSet vacia = st.executeQuery("SELECT * FROM \"" + tabla + "\" WHERE 1 = 0");
+            XSSFWorkbook wb = new XSSFWorkbook()) {
+            ColumnExtractor[] extractores = ColumnExtractor.forColumns(vacia.getMetaData(),
+                ColumnExtractor.Styles.create(wb));
+            RangeExporter rangos = new RangeExporter(H2, tabla, columna(tabla), pool, pageSize, extractores);
+            long[] limites = rangos.bounds(conn);
+            List<Object> leidas = new ArrayList<>();
+            rangos.export(limites[0], limites[1], fila -> leidas.add(fila[0]));
+            return leidas;
+        }
+    }
+
+    @Test
+    public void dividirCubreElIntervaloSinHuecos() {
+        List<long[]> rangos = RangeExporter.dividir(1, 10, 3);
+        assertEquals(3, rangos.size());
+        assertEquals(List.of(1L, 3L, 4L, 6L, 7L, 10L), List.of(rangos.get(0)[0], rangos.get(0)[1],
+            rangos.get(1)[0], rangos.get(1)[1], rangos.get(2)[0], rangos.get(2)[1]));
+
+        // Menos valores que partes: un rango por valor.
+        assertEquals(2, RangeExporter.dividir(5, 6, 10).size());
+
+        // Claves extremas: sin desbordar y consecutivos.
+        rangos = RangeExporter.dividir(Long.MIN_VALUE, Long.MAX_VALUE, 8);
+        assertEquals(8, rangos.size());
+        assertEquals(Long.MIN_VALUE, rangos.get(0)[0]);
+        assertEquals(Long.MAX_VALUE, rangos.get(7)[1]);
+        for (int i = 1; i < rangos.size(); i++) {
+            assertEquals(rangos.get(i - 1)[1] + 1, rangos.get(i)[0]);
+        }
+    }
+
+    @Test
+    public void clavePrimariaDeUnaColumnaEsUnica() throws Exception {
+        ejecutar("CREATE TABLE \"simple\" (\"id\" INT PRIMARY KEY, \"nombre\" VARCHAR(20))");
+        assertEquals(new RangeExporter.Column("id", true), columna("simple"));
+    }
+
+    @Test
+    public void indiceUnicoDeUnaColumnaEsUnico() throws Exception {
+        ejecutar("CREATE TABLE \"codigos\" (\"nombre\" VARCHAR(20), \"codigo\" INT NOT NULL)",
+            "CREATE UNIQUE INDEX \"codigos_codigo\" ON \"codigos\" (\"codigo\")");
+        assertEquals(new RangeExporter.Column("codigo", true), columna("codigos"));
+    }
+
+    @Test
+    public void claveCompuestaNoEsUnica() throws Exception {
+        ejecutar("CREATE TABLE \"lineas\" (\"pedido\" INT NOT NULL, \"linea\" INT NOT NULL,"
+            + " PRIMARY KEY (\"pedido\", \"linea\"))");
+        assertEquals(new RangeExporter.Column("pedido", false), columna("lineas"));
+
+        ejecutar("CREATE TABLE \"pares\" (\"a\" INT NOT NULL, \"b\" INT NOT NULL, UNIQUE (\"a\", \"b\"))");
+        assertEquals(new RangeExporter.Column("a", false), columna("pares"));
+    }
+
+    @Test
+    public void indiceNoUnicoYColumnasNoAptas() throws Exception {
+        ejecutar("CREATE TABLE \"eventos\" (\"tipo\" INT NOT NULL, \"texto\" VARCHAR(20))",
+            "CREATE INDEX \"eventos_tipo\" ON \"eventos\" (\"tipo\")");
+        assertEquals(new RangeExporter.Column("tipo", false), columna("eventos"));
+
+        ejecutar("CREATE TABLE \"notas\" (\"texto\" VARCHAR(20) PRIMARY KEY, \"n\" INT)",
+            "CREATE INDEX \"notas_n\" ON \"notas\" (\"n\")");
+        assertNull(columna("notas"));
+    }
+
+    @Test
+    public void paginaPorClaveUnicaEnOrden() throws Exception {
+        ejecutar("CREATE TABLE \"simple\" (\"id\" INT PRIMARY KEY, \"nombre\" VARCHAR(20))",
+            "INSERT INTO \"simple\" SELECT X, 'n' || X FROM SYSTEM_RANGE(1, 50)");
+        List<Object> esperadas = new ArrayList<>();
+        for (long i = 1; i <= 50; i++) {
+            esperadas.add(i);
+        }
+        assertEquals(esperadas, exportar("simple", 7));
+    }
+
+    @Test
+    public void claveRepetidaEnElLimiteDePaginaNoPierdeFilas() throws Exception {
+        // Cada pedido tiene tres líneas: con páginas de dos filas, todos cruzan un límite.
+        ejecutar("CREATE TABLE \"lineas\" (\"pedido\" INT NOT NULL, \"linea\" INT NOT NULL,"
+                + " PRIMARY KEY (\"pedido\", \"linea\"))",
+            "INSERT INTO \"lineas\" SELECT P.X, L.X FROM SYSTEM_RANGE(1, 20) P, SYSTEM_RANGE(1, 3) L");
+        List<Object> pedidos = exportar("lineas", 2);
+        assertEquals(60, pedidos.size());
+        for (int i = 0; i < pedidos.size(); i++) {
+            assertEquals((long) (i / 3 + 1), pedidos.get(i));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.iesvdc.dam.acceso.databaseutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+/**
+ * Reparto de una tabla en varias hojas y nombres de las continuaciones.
+ */
+public class ShardedSheetTest {
+
+    private static Set<String> reservadas(String... nombres) {
+        Set<String> conjunto = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        conjunto.addAll(List.of(nombres));
+        return conjunto;
+    }
+
+    private static List<String> nombres(List<Sheet> hojas) {
+        return hojas.stream().map(Sheet::getSheetName).toList();
+    }
+
+    @Test
+    public void continuaAlLlegarAlLimiteDeFilas() throws Exception {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            ShardedSheet hojas = new ShardedSheet(wb, "ventas", new String[] { "id" }, 2, 0, reservadas("ventas"));
+            for (int i = 0; i < 5; i++) {
+                hojas.nextRow().createCell(0).setCellValue(i);
+            }
+            assertEquals(List.of("ventas", "ventas_2", "ventas_3"), nombres(hojas.getSheets()));
+            assertEquals("id", wb.getSheet("ventas_3").getRow(0).getCell(0).getStringCellValue());
+            assertEquals(4.0, wb.getSheet("ventas_3").getRow(1).getCell(0).getNumericCellValue(), 0);
+        }
+    }
+
+    @Test
+    public void noOcupaElNombreDeOtraTabla() throws Exception {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            // ventas_2 es una tabla real que todavía no se ha exportado.
+            ShardedSheet hojas = new ShardedSheet(wb, "ventas", new String[] { "id" }, 1, 0,
+                reservadas("ventas", "VENTAS_2"));
+            hojas.nextRow();
+            hojas.nextRow();
+            assertEquals(List.of("ventas", "ventas_3"), nombres(hojas.getSheets()));
+            assertNotNull(wb.createSheet("ventas_2"));
+        }
+    }
+
+    @Test
+    public void saltaLasHojasQueYaExisten() throws Exception {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            wb.createSheet("ventas_2");
+            ShardedSheet hojas = new ShardedSheet(wb, "ventas", new String[] { "id" }, 1, 0, reservadas("ventas"));
+            hojas.nextRow();
+            hojas.nextRow();
+            assertEquals(List.of("ventas", "ventas_3"), nombres(hojas.getSheets()));
+        }
+    }
+
+    @Test
+    public void recortaLosNombresLargos() {
+        String largo = "tabla_con_un_nombre_muy_largo_de_verdad";
+        assertEquals(31, ShardedSheet.sheetName(largo, 1).length());
+        assertEquals("tabla_con_un_nombre_muy_larg_12", ShardedSheet.sheetName(largo, 12));
+    }
+}
@@ -0,0 +1,33 @@
+package com.iesvdc.dam.acceso.dialecto;
+
+import static org.junit.Assert.assertFalse;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.iesvdc.dam.acceso.modelo.FieldModel;
+import com.iesvdc.dam.acceso.modelo.FieldType;
+import com.iesvdc.dam.acceso.modelo.TableModel;
+
+/**
+ * Los gestores sin vía nativa de carga masiva.
+ */
+public class DialectTest {
+
+    @Test(expected = SQLFeatureNotSupportedException.class)
+    public void sinViaNativaNoHayCargaMasiva() throws Exception {
+        Dialect h2 = Dialect.forName("H2");
+        TableModel tabla = new TableModel("carga");
+        tabla.addField(new FieldModel("id", FieldType.INTEGER));
+
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:dialecto", "sa", "")) {
+            // Quien importa comprueba supportsBulkLoad y, si no, inserta por lotes.
+            assertFalse(h2.supportsBulkLoad(conn));
+            h2.bulkLoad(conn, tabla, Collections.emptyIterator());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tamaño de los lotes de inserción.
+ */
+public class BatchSizeControllerTest {
+
+    private static final long RAPIDO = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long LENTO = TimeUnit.SECONDS.toNanos(5);
+
+    @Test
+    public void creceMientrasLosLotesVanBien() {
+        BatchSizeController tamano = new BatchSizeController("t", 100, true, 50_000, 0, 2000);
+        tamano.record(100, 1_000, RAPIDO, false);
+        assertEquals(125, tamano.size());
+        tamano.record(125, 1_250, RAPIDO, false);
+        assertEquals(150, tamano.size());
+    }
+
+    @Test
+    public void seReduceALaMitadSiElLoteTardaDemasiado() {
+        BatchSizeController tamano = new BatchSizeController("t", 1000, true, 50_000, 0, 2000);
+        tamano.record(1000, 10_000, LENTO, false);
+        assertEquals(500, tamano.size());
+    }
+
+    @Test
+    public void losLotesEnviadosPorBytesTambienSeReducenSiTardan() {
+        BatchSizeController tamano = new BatchSizeController("t", 1000, true, 50_000, 100_000, 2000);
+        // El último lote, a medias, no cuenta.
+        tamano.record(10, 10_000, LENTO, false);
+        assertEquals(1000, tamano.size());
+
+        // Filas de 1000 bytes: el lote se envía con 100 filas y tarda demasiado.
+        tamano.record(100, 100_000, LENTO, true);
+        assertEquals(100, tamano.size());
+        tamano.record(100, 100_000, LENTO, true);
+        assertEquals(50, tamano.size());
+    }
+
+    @Test
+    public void seAjustaABatchMaxBytes() {
+        // Filas de 1000 bytes con un máximo de 100 000 bytes: como mucho 100 filas.
+        BatchSizeController tamano = new BatchSizeController("t", 1000, true, 50_000, 100_000, 2000);
+        tamano.record(1000, 1_000_000, RAPIDO, false);
+        assertEquals(100, tamano.size());
+    }
+
+    @Test
+    public void conTamanoFijadoNoCambia() {
+        BatchSizeController tamano = new BatchSizeController("t", 1000, false, 50_000, 100_000, 2000);
+        tamano.record(1000, 1_000_000, LENTO, false);
+        tamano.failed();
+        assertEquals(1000, tamano.size());
+    }
+
+    @Test
+    public void unFalloReduceALaMitad() {
+        BatchSizeController tamano = new BatchSizeController("t", 1000, true, 50_000, 0, 2000);
+        tamano.failed();
+        assertEquals(500, tamano.size());
+    }
+
+    @Test
+    public void elInsertadorEnviaElLoteAlLlegarABatchMaxBytes() throws Exception {
+        List<Integer> lotes = new ArrayList<>();
+        int[] enCurso = { 0 };
+        PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { PreparedStatement.class }, (proxy, metodo, args) -> {
+                switch (metodo.getName()) {
+                    case "addBatch" -> enCurso[0]++;
+                    case "executeBatch" -> {
+                        lotes.add(enCurso[0]);
+                        enCurso[0] = 0;
+                        return new int[0];
+                    }
+                    default -> {
+                    }
+                }
+                return null;
+            });
+
+        // Lotes fijos de 1000 filas, pero cada fila ocupa 104 bytes y el máximo es 1000.
+        BatchSizeController tamano = new BatchSizeController("t", 1000, false, 50_000, 1_000, 2000);
+        BatchInserter inserter = new BatchInserter(null, ps, "t", (sentencia, row) -> { },
+            tamano, new RejectLog("", 0));
+        for (int i = 0; i < 25; i++) {
+            inserter.add(i, List.of("x".repeat(100)));
+        }
+        inserter.flush();
+
+        assertEquals(List.of(10, 10, 5), lotes);
+        assertEquals(25, inserter.getInserted());
+        assertTrue(tamano.summary().contains("3 lote"));
+    }
+}
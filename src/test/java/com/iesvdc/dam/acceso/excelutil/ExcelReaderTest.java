@@ -0,0 +1,166 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+import com.iesvdc.dam.acceso.modelo.FieldModel;
+import com.iesvdc.dam.acceso.modelo.FieldType;
+import com.iesvdc.dam.acceso.modelo.TableModel;
+import com.iesvdc.dam.acceso.modelo.WorkbookModel;
+
+/**
+ * Lectura de un libro en streaming y con el modelo completo de POI.
+ */
+public class ExcelReaderTest {
+
+    /**
+     * Libro con una hoja "datos": cabecera, fila de ejemplo y dos filas de datos;
+     * la quinta fila falta, así que la sexta no se lee.
+     */
+    private static Path libro() throws Exception {
+        Path fichero = Files.createTempFile("lector", ".xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            CellStyle fecha = wb.createCellStyle();
+            fecha.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+            Sheet hoja = wb.createSheet("datos");
+            String[] cabecera = { "id", "nombre", "alta", "importe", "activo", "doble" };
+            Row fila = hoja.createRow(0);
+            for (int j = 0; j < cabecera.length; j++) {
+                fila.createCell(j).setCellValue(cabecera[j]);
+            }
+            for (int i = 1; i <= 4; i++) {
+                fila = hoja.createRow(i == 4 ? 5 : i);
+                fila.createCell(0).setCellValue(i);
+                fila.createCell(1).setCellValue("fila " + i);
+                fila.createCell(2).setCellValue(LocalDate.of(2024, 1, i));
+                fila.getCell(2).setCellStyle(fecha);
+                fila.createCell(3).setCellValue(i + 0.25);
+                fila.createCell(4).setCellValue(i % 2 == 0);
+                fila.createCell(5).setCellFormula("A" + (fila.getRowNum() + 1) + "*2");
+            }
+            // Resultados guardados de las fórmulas, como los deja Excel.
+            wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            try (FileOutputStream salida = new FileOutputStream(fichero.toFile())) {
+                wb.write(salida);
+            }
+        }
+        return fichero;
+    }
+
+    private static List<List<Object>> leer(Path fichero, String evaluateFormulas, List<FieldType> tipos) throws Exception {
+        Properties opciones = new Properties();
+        opciones.setProperty("evaluateFormulas", evaluateFormulas);
+        try (WorkbookModel modelo = new ExcelReader().parse(new ImportJob(fichero.toString(), opciones))) {
+            assertEquals(1, modelo.getTables().size());
+            TableModel tabla = modelo.getTables().get(0);
+            assertEquals("datos", tabla.getName());
+            for (FieldModel campo : tabla.getFields()) {
+                tipos.add(campo.getType());
+            }
+            List<List<Object>> filas = new ArrayList<>();
+            tabla.getRows().forEach(filas::add);
+            return filas;
+        }
+    }
+
+    @Test
+    public void streamingYModeloCompletoLeenLoMismo() throws Exception {
+        Path fichero = libro();
+        try {
+            List<FieldType> tipos = new ArrayList<>();
+            List<List<Object>> enStreaming = leer(fichero, "none", tipos);
+            assertEquals(List.of(FieldType.INTEGER, FieldType.VARCHAR, FieldType.DATE, FieldType.FLOAT,
+                FieldType.BOOLEAN, FieldType.INTEGER), tipos);
+            assertEquals(2, enStreaming.size());
+            assertEquals(List.of(2L, "fila 2", java.sql.Date.valueOf("2024-01-02"), 2.25, true, 4L),
+                enStreaming.get(0));
+            assertEquals(3L, enStreaming.get(1).get(0));
+
+            List<FieldType> tiposCompleto = new ArrayList<>();
+            assertEquals(enStreaming, leer(fichero, "all", tiposCompleto));
+            assertEquals(tipos, tiposCompleto);
+        } finally {
+            Files.delete(fichero);
+        }
+    }
+
+    @Test
+    public void unMismoLectorSirveParaVariosHilos() throws Exception {
+        Path fichero = libro();
+        ExecutorService hilos = Executors.newFixedThreadPool(4);
+        try {
+            List<List<Object>> esperadas = leer(fichero, "none", new ArrayList<>());
+            ExcelReader lector = new ExcelReader();
+            List<Future<List<List<Object>>>> lecturas = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String modo = i % 2 == 0 ? "none" : "all";
+                lecturas.add(hilos.submit(() -> {
+                    Properties opciones = new Properties();
+                    opciones.setProperty("evaluateFormulas", modo);
+                    try (WorkbookModel modelo = lector.parse(new ImportJob(fichero.toString(), opciones))) {
+                        List<List<Object>> filas = new ArrayList<>();
+                        modelo.getTables().get(0).getRows().forEach(filas::add);
+                        return filas;
+                    }
+                }));
+            }
+            for (Future<List<List<Object>>> lectura : lecturas) {
+                assertEquals(esperadas, lectura.get());
+            }
+        } finally {
+            hilos.shutdown();
+            Files.delete(fichero);
+        }
+    }
+
+    @Test
+    public void staleCalculaLasFormulasSinResultadoGuardado() throws Exception {
+        Path fichero = Files.createTempFile("formulas", ".xlsx");
+        try {
+            try (XSSFWorkbook wb = new XSSFWorkbook()) {
+                Sheet precios = wb.createSheet("precios");
+                precios.createRow(0).createCell(0).setCellValue("precio");
+                for (int i = 1; i <= 3; i++) {
+                    precios.createRow(i).createCell(0).setCellValue(i * 10);
+                }
+                // Fórmulas entre hojas sin resultado guardado, como las de un libro generado.
+                Sheet totales = wb.createSheet("totales");
+                totales.createRow(0).createCell(0).setCellValue("total");
+                for (int i = 1; i <= 3; i++) {
+                    totales.createRow(i).createCell(0).setCellFormula("precios!A" + (i + 1) + "*2");
+                }
+                try (FileOutputStream salida = new FileOutputStream(fichero.toFile())) {
+                    wb.write(salida);
+                }
+            }
+
+            Properties opciones = new Properties();
+            opciones.setProperty("evaluateFormulas", "stale");
+            try (WorkbookModel modelo = new ExcelReader().parse(new ImportJob(fichero.toString(), opciones))) {
+                TableModel totales = modelo.getTables().get(1);
+                assertEquals(FieldType.INTEGER, totales.getFields().get(0).getType());
+                List<List<Object>> filas = new ArrayList<>();
+                totales.getRows().forEach(filas::add);
+                assertEquals(List.of(List.of(40L), List.of(60L)), filas);
+            }
+        } finally {
+            Files.delete(fichero);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Varios ficheros que cargan la misma tabla a la vez.
+ */
+public class ImportEngineTest {
+
+    private final List<Path> ficheros = new ArrayList<>();
+    private Connection conn;
+
+    @Before
+    public void abrir() throws Exception {
+        // Mantiene viva la base de datos en memoria durante la prueba.
+        conn = DriverManager.getConnection("jdbc:h2:mem:motor", "sa", "");
+    }
+
+    @After
+    public void cerrar() throws Exception {
+        conn.close();
+        for (Path fichero : ficheros) {
+            Files.deleteIfExists(fichero);
+        }
+    }
+
+    /**
+     * Libro con una hoja "ventas": cabecera, fila de ejemplo y tres filas de datos.
+     */
+    private Path libro(int desde, String segundaColumna) throws Exception {
+        Path fichero = Files.createTempFile("ventas", ".xlsx");
+        ficheros.add(fichero);
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            Sheet hoja = wb.createSheet("ventas");
+            Row fila = hoja.createRow(0);
+            fila.createCell(0).setCellValue("id");
+            fila.createCell(1).setCellValue(segundaColumna);
+            for (int i = 1; i <= 4; i++) {
+                fila = hoja.createRow(i);
+                fila.createCell(0).setCellValue(desde + i);
+                fila.createCell(1).setCellValue(i * 1.5);
+            }
+            try (FileOutputStream salida = new FileOutputStream(fichero.toFile())) {
+                wb.write(salida);
+            }
+        }
+        return fichero;
+    }
+
+    private long filas() throws Exception {
+        try (Statement st = conn.createStatement();
+            ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM \"ventas\"")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    public void losFicherosDeUnaMismaTablaSeSuman() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("driver", "H2");
+        props.setProperty("database", "mem:motor");
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+
+        List<Path> mismas = List.of(libro(0, "importe"), libro(100, "importe"), libro(200, "importe"));
+        Path otras = libro(300, "precio");
+        try (ImportEngine engine = new ImportEngine(props, Executors.newFixedThreadPool(3))) {
+            List<CompletableFuture<ImportResult>> trabajos = new ArrayList<>();
+            for (Path fichero : mismas) {
+                trabajos.add(engine.submit(new ImportJob(fichero.toString(), props)));
+            }
+            for (CompletableFuture<ImportResult> trabajo : trabajos) {
+                assertEquals(3, trabajo.join().getRows());
+            }
+            assertEquals(9, filas());
+
+            // Otras columnas: falla sin tocar la tabla.
+            try {
+                engine.submit(new ImportJob(otras.toString(), props)).join();
+                fail("Debe fallar con otras columnas");
+            } catch (CompletionException e) {
+                assertTrue(e.getCause().getCause().getMessage().contains("con otras columnas"));
+            }
+            assertEquals(9, filas());
+        }
+
+        // Un motor nuevo vuelve a crear la tabla.
+        try (ImportEngine engine = new ImportEngine(props, Executors.newFixedThreadPool(1))) {
+            engine.run(new ImportJob(mismas.get(1).toString(), props));
+            assertEquals(3, filas());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Ficheros, directorios y patrones de <b>inputFile</b>.
+ */
+public class InputFilesTest {
+
+    private Path base;
+
+    @Before
+    public void crearFicheros() throws Exception {
+        base = Files.createTempDirectory("entrada").toAbsolutePath();
+        for (String ruta : List.of("a.xlsx", "b.xlsx", "~$a.xlsx", "notas.txt", "sub/c.xlsx", "sub/hondo/d.xlsx")) {
+            Path fichero = base.resolve(ruta);
+            Files.createDirectories(fichero.getParent());
+            Files.createFile(fichero);
+        }
+    }
+
+    @After
+    public void borrarFicheros() throws Exception {
+        try (Stream<Path> rutas = Files.walk(base)) {
+            for (Path ruta : rutas.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(ruta);
+            }
+        }
+    }
+
+    private List<Path> rutas(String... relativas) {
+        return Stream.of(relativas).map(base::resolve).toList();
+    }
+
+    @Test
+    public void unFicheroSeDevuelveTalCual() throws Exception {
+        assertEquals(rutas("notas.txt"), InputFiles.resolve(base.resolve("notas.txt").toString()));
+    }
+
+    @Test
+    public void unDirectorioDaSusLibrosSinSubdirectoriosNiBloqueos() throws Exception {
+        assertEquals(rutas("a.xlsx", "b.xlsx"), InputFiles.resolve(base.toString()));
+    }
+
+    @Test
+    public void patronConBaseAbsoluta() throws Exception {
+        assertEquals(rutas("a.xlsx", "b.xlsx"), InputFiles.resolve(base + "/*.xlsx"));
+        assertEquals(rutas("sub/hondo/d.xlsx"), InputFiles.resolve(base + "/sub/*/d.xlsx"));
+    }
+
+    @Test
+    public void dobleAsteriscoIncluyeElDirectorioBase() throws Exception {
+        assertEquals(rutas("a.xlsx", "b.xlsx", "sub/c.xlsx", "sub/hondo/d.xlsx"),
+            InputFiles.resolve(base + "/**/*.xlsx"));
+        assertEquals(rutas("sub/c.xlsx", "sub/hondo/d.xlsx"), InputFiles.resolve(base + "/sub/**/*.xlsx"));
+    }
+
+    @Test
+    public void patronSinCoincidenciasOSinBaseDaListaVacia() throws Exception {
+        assertEquals(List.of(), InputFiles.resolve(base + "/*.csv"));
+        assertEquals(List.of(), InputFiles.resolve(base + "/no_existe/*.xlsx"));
+    }
+}
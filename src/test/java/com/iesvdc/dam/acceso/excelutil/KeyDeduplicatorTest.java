@@ -0,0 +1,79 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.iesvdc.dam.acceso.modelo.FieldModel;
+import com.iesvdc.dam.acceso.modelo.FieldType;
+import com.iesvdc.dam.acceso.modelo.TableModel;
+
+/**
+ * Descarte de filas con la clave de negocio repetida.
+ */
+public class KeyDeduplicatorTest {
+
+    private static TableModel tabla(Object... claves) {
+        TableModel tabla = new TableModel("clientes");
+        tabla.addField(new FieldModel("dni", FieldType.VARCHAR));
+        tabla.addField(new FieldModel("n", FieldType.INTEGER));
+        long n = 0;
+        for (Object clave : claves) {
+            tabla.addRow(Arrays.asList(clave, n++));
+        }
+        return tabla;
+    }
+
+    private static List<Long> conservadas(TableModel tabla, KeyDeduplicator dedup) {
+        List<Long> filas = new ArrayList<>();
+        long fila = 0;
+        for (List<Object> row : tabla.getRows()) {
+            if (dedup.keep(fila, row)) {
+                filas.add(fila);
+            }
+            fila++;
+        }
+        return filas;
+    }
+
+    private static KeyDeduplicator dedup(TableModel tabla, String politica) {
+        Properties opciones = new Properties();
+        opciones.setProperty("dedupKeys.clientes", "dni");
+        opciones.setProperty("dedupPolicy", politica);
+        return KeyDeduplicator.forTable(tabla, new ImportJob("", opciones));
+    }
+
+    @Test
+    public void firstConservaLaPrimera() throws Exception {
+        TableModel tabla = tabla("a", "b", "a", null, null, "a");
+        try (KeyDeduplicator dedup = dedup(tabla, "first")) {
+            StringWriter informe = new StringWriter();
+            dedup.analyze(informe);
+            assertEquals(2, dedup.getDuplicates());
+            // Las claves nulas nunca son duplicadas.
+            assertEquals(List.of(0L, 1L, 3L, 4L), conservadas(tabla, dedup));
+            assertEquals(List.of("clientes;3;1;\"a\"", "clientes;6;1;\"a\""),
+                informe.toString().lines().toList());
+        }
+    }
+
+    @Test
+    public void lastInformaDeLaFilaQueQuedaAlFinal() throws Exception {
+        TableModel tabla = tabla("a", "b", "a", "a");
+        try (KeyDeduplicator dedup = dedup(tabla, "last")) {
+            StringWriter informe = new StringWriter();
+            dedup.analyze(informe);
+            assertEquals(2, dedup.getDuplicates());
+            assertEquals(List.of(1L, 3L), conservadas(tabla, dedup));
+            // La fila 1 se descarta por la 4, no por la 3, que también se descarta.
+            assertEquals(List.of("clientes;1;4;\"a\"", "clientes;3;4;\"a\""),
+                informe.toString().lines().toList());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tabla de claves fuera del heap.
+ */
+public class LongIndexMapTest {
+
+    @Test
+    public void guardaYReemplazaValores() {
+        try (LongIndexMap mapa = new LongIndexMap(10)) {
+            assertEquals(LongIndexMap.AUSENTE, mapa.get(42));
+            assertEquals(LongIndexMap.AUSENTE, mapa.put(42, 1, false));
+            assertEquals(1, mapa.put(42, 2, false));
+            assertEquals(1, mapa.get(42));
+            assertEquals(1, mapa.put(42, 3, true));
+            assertEquals(3, mapa.get(42));
+            assertEquals(1, mapa.size());
+        }
+    }
+
+    @Test
+    public void reparteLasClavesEnVariosSegmentos() {
+        // Segmentos de 16 huecos: 1000 claves ocupan 2048 huecos en 128 segmentos.
+        try (LongIndexMap mapa = new LongIndexMap(1_000, 4)) {
+            for (long i = 1; i <= 1_000; i++) {
+                mapa.put(i * 0x9E3779B97F4A7C15L, i, false);
+            }
+            assertEquals(1_000, mapa.size());
+            for (long i = 1; i <= 1_000; i++) {
+                assertEquals(i, mapa.get(i * 0x9E3779B97F4A7C15L));
+            }
+            assertEquals(LongIndexMap.AUSENTE, mapa.get(7));
+        }
+    }
+
+    @Test
+    public void colisionesAlFinalDeLaTablaDanLaVuelta() {
+        try (LongIndexMap mapa = new LongIndexMap(8, 2)) {
+            // 32 huecos en segmentos de 4: todas empiezan en el último (31) y siguen por el principio.
+            long[] claves = { 31, 31 + 32, 31 + 64, 31 + 96 };
+            for (int i = 0; i < claves.length; i++) {
+                mapa.put(claves[i], i, false);
+            }
+            for (int i = 0; i < claves.length; i++) {
+                assertEquals(i, mapa.get(claves[i]));
+            }
+        }
+    }
+
+    @Test
+    public void laClaveCeroEstaReservada() {
+        try (LongIndexMap mapa = new LongIndexMap(4)) {
+            mapa.put(0, 1, false);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Esperado.
+        }
+    }
+
+    @Test
+    public void avisaCuandoSeLlena() {
+        try (LongIndexMap mapa = new LongIndexMap(1)) {
+            for (long i = 1; i <= 64; i++) {
+                mapa.put(i, i, false);
+            }
+            fail();
+        } catch (IllegalStateException e) {
+            // Esperado: la capacidad mínima es de 32 huecos.
+        }
+    }
+}
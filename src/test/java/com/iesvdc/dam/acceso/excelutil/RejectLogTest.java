@@ -0,0 +1,57 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Fichero de filas rechazadas en el modo tolerante.
+ */
+public class RejectLogTest {
+
+    @Test
+    public void sinFicheroDeEntradaUsaUnTemporal() throws Exception {
+        RejectLog rechazos = new RejectLog("", -1);
+        assertNull(rechazos.getPath());
+        rechazos.reject("t", 0, List.of("a"), new SQLException("fallo"));
+        rechazos.close();
+
+        Path fichero = rechazos.getPath();
+        assertNotNull(fichero);
+        List<String> lineas = Files.readAllLines(fichero);
+        assertEquals("t;1;\"fallo\";\"[a]\"", lineas.get(1));
+        Files.delete(fichero);
+    }
+
+    @Test
+    public void alRevertirSeBorraElFichero() throws Exception {
+        Path entrada = Files.createTempFile("libro", ".xlsx");
+        RejectLog rechazos = new RejectLog(entrada.toString(), -1);
+        rechazos.reject("t", 3, List.of("a"), new SQLException("fallo"));
+        assertTrue(Files.exists(rechazos.getPath()));
+
+        rechazos.discard();
+        assertFalse(Files.exists(rechazos.getPath()));
+        Files.delete(entrada);
+    }
+
+    @Test(expected = SQLException.class)
+    public void abortaAlSuperarElMaximo() throws Exception {
+        RejectLog rechazos = new RejectLog("", 1);
+        try {
+            rechazos.reject("t", 0, List.of("a"), new SQLException("uno"));
+            rechazos.reject("t", 1, List.of("b"), new SQLException("dos"));
+        } finally {
+            rechazos.discard();
+        }
+    }
+}
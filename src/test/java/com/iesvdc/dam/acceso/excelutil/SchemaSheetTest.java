@@ -0,0 +1,174 @@
+package com.iesvdc.dam.acceso.excelutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.FileOutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+import com.iesvdc.dam.acceso.dialecto.Dialect;
+import com.iesvdc.dam.acceso.modelo.FieldType;
+import com.iesvdc.dam.acceso.modelo.WorkbookModel;
+
+/**
+ * Escritura y lectura de la hoja de esquema, hojas del usuario con el mismo nombre
+ * y decimales exactos.
+ */
+public class SchemaSheetTest {
+
+    private static final List<SchemaSheet.Column> COLUMNAS = List.of(
+        new SchemaSheet.Column("importes", "id", FieldType.INTEGER, "INTEGER", Types.INTEGER, 10, 0,
+            false, 1, List.of("importes"), "H2"),
+        new SchemaSheet.Column("importes", "importe", FieldType.DECIMAL, "DECIMAL(30,10)", Types.DECIMAL, 30, 10,
+            true, 0, List.of("importes"), "H2"));
+
+    @Test
+    public void escribeYLeeElEsquema() throws Exception {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            SchemaSheet.write(wb, COLUMNAS);
+            assertEquals(Map.of("importes", COLUMNAS), SchemaSheet.read(wb));
+        }
+    }
+
+    @Test
+    public void hojaDelUsuarioConOtroFormatoNoEsEsquema() throws Exception {
+        assertNull(SchemaSheet.read(List.of(List.of("nombre", "edad"), List.of("Ana", "30"))));
+
+        // Una hoja _schema del usuario se importa como una tabla más.
+        Path fichero = Files.createTempFile("esquema", ".xlsx");
+        try {
+            try (XSSFWorkbook wb = new XSSFWorkbook()) {
+                Sheet hoja = wb.createSheet(SchemaSheet.NAME);
+                Row fila = hoja.createRow(0);
+                fila.createCell(0).setCellValue("nombre");
+                fila.createCell(1).setCellValue("edad");
+                for (int i = 1; i <= 3; i++) {
+                    fila = hoja.createRow(i);
+                    fila.createCell(0).setCellValue("persona " + i);
+                    fila.createCell(1).setCellValue(20 + i);
+                }
+                try (FileOutputStream salida = new FileOutputStream(fichero.toFile())) {
+                    wb.write(salida);
+                }
+            }
+            for (String modo : List.of("none", "all")) {
+                Properties opciones = new Properties();
+                opciones.setProperty("evaluateFormulas", modo);
+                try (WorkbookModel modelo = new ExcelReader().parse(new ImportJob(fichero.toString(), opciones))) {
+                    assertEquals(1, modelo.getTables().size());
+                    assertEquals(SchemaSheet.NAME, modelo.getTables().get(0).getName());
+                    assertEquals(FieldType.INTEGER, modelo.getTables().get(0).getFields().get(1).getType());
+                }
+            }
+        } finally {
+            Files.delete(fichero);
+        }
+    }
+
+    @Test
+    public void decimalesYBigintSinSignoSonExactos() {
+        assertEquals(FieldType.DECIMAL, SchemaSheet.fieldType(Types.DECIMAL, 30, true));
+        assertEquals(FieldType.DECIMAL, SchemaSheet.fieldType(Types.NUMERIC, 0, true));
+        assertEquals(FieldType.DECIMAL, SchemaSheet.fieldType(Types.BIGINT, 20, false));
+        assertEquals(FieldType.INTEGER, SchemaSheet.fieldType(Types.BIGINT, 19, true));
+        assertEquals(FieldType.FLOAT, SchemaSheet.fieldType(Types.DOUBLE, 22, true));
+
+        SchemaSheet.Column sinSigno = new SchemaSheet.Column("t", "c", FieldType.DECIMAL, "BIGINT UNSIGNED",
+            Types.BIGINT, 20, 0, false, 0, List.of("t"), "MySQL");
+        assertEquals("DECIMAL(20,0)", sinSigno.toField(Dialect.forName("PostgreSQL")).getSqlType());
+        assertEquals("BIGINT UNSIGNED", sinSigno.toField(Dialect.forName("MySQL")).getSqlType());
+    }
+
+    @Test
+    public void importaLosDecimalesSinPerderDigitos() throws Exception {
+        Path fichero = Files.createTempFile("decimales", ".xlsx");
+        try {
+            try (XSSFWorkbook wb = new XSSFWorkbook()) {
+                Sheet hoja = wb.createSheet("importes");
+                Row fila = hoja.createRow(0);
+                fila.createCell(0).setCellValue("id");
+                fila.createCell(1).setCellValue("importe");
+                // Como la exportación: texto si tiene más de 15 dígitos, número si no.
+                fila = hoja.createRow(1);
+                fila.createCell(0).setCellValue(1);
+                fila.createCell(1).setCellValue("12345678901234567890.0123456789");
+                fila = hoja.createRow(2);
+                fila.createCell(0).setCellValue(2);
+                fila.createCell(1).setCellValue(12.5);
+                SchemaSheet.write(wb, COLUMNAS);
+                try (FileOutputStream salida = new FileOutputStream(fichero.toFile())) {
+                    wb.write(salida);
+                }
+            }
+
+            Properties opciones = new Properties();
+            opciones.setProperty("driver", "H2");
+            ImportJob job = new ImportJob(fichero.toString(), opciones);
+            ExcelReader lector = new ExcelReader();
+            try (WorkbookModel modelo = lector.parse(job);
+                Connection conn = DriverManager.getConnection("jdbc:h2:mem:decimales", "sa", "");
+                Statement st = conn.createStatement()) {
+                lector.save(modelo, conn, job);
+                try (ResultSet rs = st.executeQuery("SELECT \"importe\" FROM \"importes\" ORDER BY \"id\"")) {
+                    rs.next();
+                    assertEquals(new BigDecimal("12345678901234567890.0123456789"), rs.getBigDecimal(1));
+                    rs.next();
+                    assertEquals(0, new BigDecimal("12.5").compareTo(rs.getBigDecimal(1)));
+                }
+            }
+        } finally {
+            Files.delete(fichero);
+        }
+    }
+
+    @Test
+    public void importaLosBigintQueLaExportacionEscribeComoTexto() throws Exception {
+        Path fichero = Files.createTempFile("enteros", ".xlsx");
+        try {
+            try (XSSFWorkbook wb = new XSSFWorkbook()) {
+                Sheet hoja = wb.createSheet("contadores");
+                hoja.createRow(0).createCell(0).setCellValue("valor");
+                hoja.createRow(1).createCell(0).setCellValue(Long.toString(Long.MAX_VALUE));
+                hoja.createRow(2).createCell(0).setCellValue(42);
+                SchemaSheet.write(wb, List.of(new SchemaSheet.Column("contadores", "valor", FieldType.INTEGER,
+                    "BIGINT", Types.BIGINT, 64, 0, false, 0, List.of("contadores"), "H2")));
+                try (FileOutputStream salida = new FileOutputStream(fichero.toFile())) {
+                    wb.write(salida);
+                }
+            }
+
+            Properties opciones = new Properties();
+            opciones.setProperty("driver", "H2");
+            ImportJob job = new ImportJob(fichero.toString(), opciones);
+            ExcelReader lector = new ExcelReader();
+            try (WorkbookModel modelo = lector.parse(job);
+                Connection conn = DriverManager.getConnection("jdbc:h2:mem:enteros", "sa", "");
+                Statement st = conn.createStatement()) {
+                lector.save(modelo, conn, job);
+                try (ResultSet rs = st.executeQuery("SELECT \"valor\" FROM \"contadores\" ORDER BY 1")) {
+                    rs.next();
+                    assertEquals(42L, rs.getLong(1));
+                    rs.next();
+                    assertEquals(Long.MAX_VALUE, rs.getLong(1));
+                }
+            }
+        } finally {
+            Files.delete(fichero);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.iesvdc.dam.acceso.modelo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Filas en el heap y en el fichero temporal, y presupuesto compartido.
+ */
+public class RowBufferTest {
+
+    private static List<Object> fila(long i) {
+        return Arrays.asList(i, i + 0.5, "texto " + i, i % 2 == 0, null,
+            new Date(86_400_000L * i), new Timestamp(1_000L * i), new BigDecimal(i + "12345678901234567890.10"));
+    }
+
+    @Test
+    public void pasaADiscoYDevuelveLasFilasEnOrden() throws Exception {
+        Path dir = Files.createTempDirectory("rowbuffer");
+        try (RowBuffer filas = new RowBuffer(1_000, dir)) {
+            for (long i = 0; i < 500; i++) {
+                filas.add(fila(i));
+            }
+            assertTrue(filas.isSpilled());
+            assertEquals(500, filas.size());
+            try (var ficheros = Files.list(dir)) {
+                assertEquals(1, ficheros.count());
+            }
+
+            // Se puede recorrer más de una vez.
+            for (int vuelta = 0; vuelta < 2; vuelta++) {
+                long i = 0;
+                for (List<Object> leida : filas) {
+                    assertEquals(fila(i++), leida);
+                }
+                assertEquals(500, i);
+            }
+        }
+        try (var ficheros = Files.list(dir)) {
+            assertEquals(0, ficheros.count());
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void textosLargosCortadosEntreVentanas() {
+        String largo = "x".repeat(100_000);
+        try (RowBuffer filas = new RowBuffer(0, null)) {
+            for (int i = 0; i < 1_000; i++) {
+                filas.add(new ArrayList<>(List.of(i + largo)));
+            }
+            int i = 0;
+            for (List<Object> leida : filas) {
+                assertEquals(i++ + largo, leida.get(0));
+            }
+            assertEquals(1_000, i);
+        }
+    }
+
+    @Test
+    public void elPresupuestoEsComunATodosLosBuffers() {
+        MemoryBudget presupuesto = new MemoryBudget(10_000);
+        RowBuffer primera = new RowBuffer(presupuesto, null);
+        RowBuffer segunda = new RowBuffer(presupuesto, null);
+        try {
+            for (long i = 0; i < 1_000 && !primera.isSpilled(); i++) {
+                primera.add(fila(i));
+            }
+            assertTrue(primera.isSpilled());
+            assertTrue(presupuesto.getUsed() <= presupuesto.getLimit());
+
+            // La primera tabla ha gastado el presupuesto: la segunda va directa a disco.
+            segunda.add(fila(0));
+            assertTrue(segunda.isSpilled());
+        } finally {
+            primera.close();
+            segunda.close();
+        }
+        assertEquals(0, presupuesto.getUsed());
+
+        try (RowBuffer tercera = new RowBuffer(presupuesto, null)) {
+            tercera.add(fila(0));
+            assertFalse(tercera.isSpilled());
+        }
+    }
+}